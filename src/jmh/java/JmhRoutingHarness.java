@@ -0,0 +1,102 @@
+import benchmarks.RoutingHarness;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class implements the RoutingHarness of the JMH benchmarks with the classes of the route planner.
+ * It's in the default package like the route planner, so it can use Graph and PathFinder directly.
+ */
+public class JmhRoutingHarness implements RoutingHarness {
+
+    private Graph graph;
+    /*
+     * PathFinder of the benchmark thread, the harness is only used by one thread at a time
+     */
+    private PathFinder pathFinder;
+
+    @Override
+    public void load(File file) {
+        graph = (Graph) readGraph(file);
+        pathFinder = new PathFinder(graph);
+    }
+
+    @Override
+    public Object readGraph(File file) {
+        try {
+            return new Graph(file);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return graph.getNumberOfNodes();
+    }
+
+    @Override
+    public double getLatitudeOfNode(int node) {
+        return graph.getLatitudeOfNode(node);
+    }
+
+    @Override
+    public double getLongitudeOfNode(int node) {
+        return graph.getLongitudeOfNode(node);
+    }
+
+    @Override
+    public double[] getNearest(double lon, double lat) {
+        return graph.getClosestDistance(lon, lat);
+    }
+
+    @Override
+    public int oneToOneDijkstra(int source, int target) {
+        return pathFinder.oneToOneDijkstra(source, target);
+    }
+
+    @Override
+    public int[] oneToAllDijkstra(int source) {
+        return pathFinder.oneToAllDijkstra(source);
+    }
+
+    @Override
+    public List<String> pathCoords(int source, int target) {
+        return pathFinder.pathFromAToBCoords(source, target);
+    }
+
+    @Override
+    public int[] queriesOfRank(int count, int rank, long seed) {
+        Random random = new Random(seed);
+        int numberOfNodes = graph.getNumberOfNodes();
+        int[] queries = new int[2 * count];
+        int found = 0;
+        for (int attempt = 0; found < count && attempt < 100 * count; attempt++) {
+            int source = random.nextInt(numberOfNodes);
+            int[] distances = pathFinder.oneToAllDijkstra(source);
+            //sort the reached nodes by distance, the node at position rank - 1 has the Dijkstra rank
+            long[] reached = new long[numberOfNodes];
+            int reachedCount = 0;
+            for (int node = 0; node < numberOfNodes; node++) {
+                if (distances[node] != Integer.MAX_VALUE) {
+                    reached[reachedCount++] = ((long) distances[node] << 32) | node;
+                }
+            }
+            if (rank != Integer.MAX_VALUE && reachedCount < rank) {
+                continue;
+            }
+            Arrays.sort(reached, 0, reachedCount);
+            int position = rank == Integer.MAX_VALUE ? reachedCount - 1 : rank - 1;
+            queries[2 * found] = source;
+            queries[2 * found + 1] = (int) reached[position];
+            found++;
+        }
+        if (found < count) {
+            throw new IllegalStateException("the graph has too few nodes for queries of rank " + rank);
+        }
+        return queries;
+    }
+}
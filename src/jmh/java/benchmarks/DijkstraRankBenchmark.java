@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures one-to-one Dijkstra queries grouped by the Dijkstra rank of their targets:
+ * local queries visit 2^8 nodes, regional queries 2^12 nodes and long-haul queries lead to the
+ * farthest node of their source.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DijkstraRankBenchmark {
+
+    private static final int NUMBER_OF_QUERIES = 64;
+
+    @Param({"local", "regional", "longhaul"})
+    public String distance;
+
+    private int[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphState graph) {
+        int rank;
+        switch (distance) {
+            case "local":
+                rank = 1 << 8;
+                break;
+            case "regional":
+                rank = 1 << 12;
+                break;
+            default:
+                rank = Integer.MAX_VALUE;
+        }
+        queries = graph.harness.queriesOfRank(NUMBER_OF_QUERIES, rank, 11);
+    }
+
+    @Benchmark
+    public int oneToOneDijkstra(GraphState graph) {
+        int i = next;
+        next = (next + 1) % NUMBER_OF_QUERIES;
+        return graph.harness.oneToOneDijkstra(queries[2 * i], queries[2 * i + 1]);
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the construction of a Graph from a .fmi file (parsing, reverse edges and QuadTree).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"100"})
+    public int size;
+
+    private File file;
+    private RoutingHarness harness;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = GraphState.syntheticFile(size);
+        harness = RoutingHarness.create();
+    }
+
+    @Benchmark
+    public Object readGraph() {
+        return harness.readGraph(file);
+    }
+}
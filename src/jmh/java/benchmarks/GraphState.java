@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * This class represents the graph the benchmarks run on: a synthetic road network (see SyntheticGraph) which
+ * is written into a temporary file once per size. Every benchmark thread has its own harness and therefore
+ * its own PathFinder.
+ */
+@State(Scope.Thread)
+public class GraphState {
+
+    /*
+     * synthetic .fmi files of this JVM by size
+     */
+    private static final Map<Integer, File> FILES = new HashMap<>();
+
+    /*
+     * number of intersections per row and column, 100 gives about 50,000 nodes
+     */
+    @Param({"100"})
+    public int size;
+
+    public File file;
+    public RoutingHarness harness;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = syntheticFile(size);
+        harness = RoutingHarness.create();
+        harness.load(file);
+    }
+
+    /**
+     * This method returns the synthetic .fmi file of the given size, it's written on first use
+     *
+     * @param size number of intersections per row and column
+     * @return the .fmi file
+     * @throws IOException in case the file can't be written
+     */
+    static synchronized File syntheticFile(int size) throws IOException {
+        File file = FILES.get(size);
+        if (file == null) {
+            file = File.createTempFile("synthetic-" + size + "-", ".fmi");
+            file.deleteOnExit();
+            SyntheticGraph.write(file, size, 42);
+            FILES.put(size, file);
+        }
+        return file;
+    }
+}
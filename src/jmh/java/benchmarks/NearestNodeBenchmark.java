@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the nearest node search of the QuadTree. Random coordinates are spread evenly over
+ * the bounding box of the graph, clustered coordinates lie close to a few nodes like the clicks of users
+ * in a few cities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearestNodeBenchmark {
+
+    private static final int NUMBER_OF_POINTS = 4096;
+    private static final int NUMBER_OF_CLUSTERS = 16;
+
+    @Param({"random", "clustered"})
+    public String distribution;
+
+    private double[] longitudes;
+    private double[] latitudes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphState graph) {
+        RoutingHarness harness = graph.harness;
+        Random random = new Random(7);
+        longitudes = new double[NUMBER_OF_POINTS];
+        latitudes = new double[NUMBER_OF_POINTS];
+
+        if (distribution.equals("random")) {
+            double minLon = Double.MAX_VALUE;
+            double maxLon = -Double.MAX_VALUE;
+            double minLat = Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE;
+            for (int node = 0; node < harness.getNumberOfNodes(); node++) {
+                minLon = Math.min(minLon, harness.getLongitudeOfNode(node));
+                maxLon = Math.max(maxLon, harness.getLongitudeOfNode(node));
+                minLat = Math.min(minLat, harness.getLatitudeOfNode(node));
+                maxLat = Math.max(maxLat, harness.getLatitudeOfNode(node));
+            }
+            for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+                longitudes[i] = minLon + random.nextDouble() * (maxLon - minLon);
+                latitudes[i] = minLat + random.nextDouble() * (maxLat - minLat);
+            }
+        } else {
+            int[] centers = new int[NUMBER_OF_CLUSTERS];
+            for (int i = 0; i < NUMBER_OF_CLUSTERS; i++) {
+                centers[i] = random.nextInt(harness.getNumberOfNodes());
+            }
+            for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+                int center = centers[random.nextInt(NUMBER_OF_CLUSTERS)];
+                //about 500 meters around the center
+                longitudes[i] = harness.getLongitudeOfNode(center) + random.nextGaussian() * 0.007;
+                latitudes[i] = harness.getLatitudeOfNode(center) + random.nextGaussian() * 0.0045;
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] getNearest(GraphState graph) {
+        int i = next;
+        next = (next + 1) % NUMBER_OF_POINTS;
+        return graph.harness.getNearest(longitudes[i], latitudes[i]);
+    }
+}
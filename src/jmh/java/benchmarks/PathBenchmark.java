@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures one-to-all Dijkstra searches and the conversion of a shortest path into the
+ * coordinate list the web client receives (regional queries, see DijkstraRankBenchmark).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBenchmark {
+
+    private static final int NUMBER_OF_QUERIES = 64;
+
+    private int[] sources;
+    private int[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphState graph) {
+        Random random = new Random(13);
+        sources = new int[NUMBER_OF_QUERIES];
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            sources[i] = random.nextInt(graph.harness.getNumberOfNodes());
+        }
+        queries = graph.harness.queriesOfRank(NUMBER_OF_QUERIES, 1 << 12, 17);
+    }
+
+    @Benchmark
+    public int[] oneToAllDijkstra(GraphState graph) {
+        int i = next;
+        next = (next + 1) % NUMBER_OF_QUERIES;
+        return graph.harness.oneToAllDijkstra(sources[i]);
+    }
+
+    @Benchmark
+    public List<String> pathCoords(GraphState graph) {
+        int i = next;
+        next = (next + 1) % NUMBER_OF_QUERIES;
+        return graph.harness.pathCoords(queries[2 * i], queries[2 * i + 1]);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * This interface connects the benchmarks with the route planner. The classes of the route planner are in the
+ * default package, which can't be imported by the benchmarks (JMH needs a named package), so the benchmarks
+ * call them through this interface. The implementation JmhRoutingHarness is in the default package and is
+ * created by reflection once per trial, the measured calls are plain interface calls.
+ */
+public interface RoutingHarness {
+
+    /**
+     * This method creates the implementation of the harness
+     *
+     * @return a new harness without a graph
+     */
+    static RoutingHarness create() {
+        try {
+            return (RoutingHarness) Class.forName("JmhRoutingHarness").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JmhRoutingHarness is missing", e);
+        }
+    }
+
+    /**
+     * This method reads the graph and keeps it for the other methods
+     *
+     * @param file the .fmi file
+     */
+    void load(File file);
+
+    /**
+     * This method reads the graph without keeping it
+     *
+     * @param file the .fmi file
+     * @return the graph
+     */
+    Object readGraph(File file);
+
+    int getNumberOfNodes();
+
+    double getLatitudeOfNode(int node);
+
+    double getLongitudeOfNode(int node);
+
+    /**
+     * This method returns the coordinate of the node which is closest to the coordinate (QuadTree search)
+     */
+    double[] getNearest(double lon, double lat);
+
+    int oneToOneDijkstra(int source, int target);
+
+    int[] oneToAllDijkstra(int source);
+
+    /**
+     * This method calculates the shortest path with Dijkstra and converts it into coordinates
+     */
+    List<String> pathCoords(int source, int target);
+
+    /**
+     * This method picks queries whose target has the given Dijkstra rank: the target is the rank-th node
+     * the Dijkstra search from the source visits. Sources which don't reach enough nodes are skipped.
+     *
+     * @param count number of queries
+     * @param rank  Dijkstra rank of the targets, or Integer.MAX_VALUE for the farthest reachable node
+     * @param seed  seed of the random sources
+     * @return pairs of source and target
+     */
+    int[] queriesOfRank(int count, int rank, long seed);
+}
@@ -0,0 +1,190 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class writes a synthetic road network in the .fmi format, so the benchmarks run without the
+ * Germany file. The network is a grid of intersections around Stuttgart: every 10th row and column is a
+ * fast main road, the other roads exist with a probability of 60% and some of them are one-way.
+ * Every road is split into up to 6 segments like the ways of OpenStreetMap. The node ids are shuffled,
+ * so neighboring nodes aren't stored next to each other.
+ */
+public final class SyntheticGraph {
+
+    /*
+     * speeds of main roads and other roads in meters per weight unit
+     */
+    private static final double MAIN_ROAD_SPEED = 30;
+    private static final double ROAD_SPEED = 13;
+
+    private final Random random;
+    private double[] latitudes = new double[1024];
+    private double[] longitudes = new double[1024];
+    private int numberOfNodes;
+    /*
+     * source, target and weight of each edge
+     */
+    private int[] edges = new int[3 * 1024];
+    private int numberOfEdges;
+
+    private SyntheticGraph(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * This method writes a synthetic road network with size * size intersections
+     * (about 5 * size * size nodes and 10 * size * size edges)
+     *
+     * @param file the .fmi file
+     * @param size number of intersections per row and column
+     * @param seed seed of the random numbers, the same seed always writes the same graph
+     * @throws IOException in case the file can't be written
+     */
+    public static void write(File file, int size, long seed) throws IOException {
+        SyntheticGraph graph = new SyntheticGraph(seed);
+        graph.generate(size);
+        graph.writeFmi(file);
+    }
+
+    private void generate(int size) {
+        int[][] grid = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                grid[y][x] = addNode(48.6 + y * 0.01 + jitter(0.003), 9.0 + x * 0.015 + jitter(0.004));
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean mainRow = y % 10 == 0;
+                boolean mainColumn = x % 10 == 0;
+                if (x + 1 < size && (mainRow || mainColumn || random.nextDouble() < 0.6)) {
+                    addRoad(grid[y][x], grid[y][x + 1], mainRow ? MAIN_ROAD_SPEED : ROAD_SPEED);
+                }
+                if (y + 1 < size && (mainRow || mainColumn || random.nextDouble() < 0.6)) {
+                    addRoad(grid[y][x], grid[y + 1][x], mainColumn ? MAIN_ROAD_SPEED : ROAD_SPEED);
+                }
+            }
+        }
+    }
+
+    private double jitter(double range) {
+        return (2 * random.nextDouble() - 1) * range;
+    }
+
+    private int addNode(double latitude, double longitude) {
+        if (numberOfNodes == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, 2 * numberOfNodes);
+            longitudes = Arrays.copyOf(longitudes, 2 * numberOfNodes);
+        }
+        latitudes[numberOfNodes] = latitude;
+        longitudes[numberOfNodes] = longitude;
+        return numberOfNodes++;
+    }
+
+    /**
+     * This method adds a road between two intersections which is split into up to 6 segments
+     */
+    private void addRoad(int from, int to, double speed) {
+        boolean oneWay = random.nextDouble() < 0.05;
+        int segments = 1 + random.nextInt(7);
+        int previous = from;
+        for (int i = 1; i < segments; i++) {
+            double t = (double) i / segments;
+            int node = addNode(latitudes[from] + (latitudes[to] - latitudes[from]) * t + jitter(0.0005),
+                    longitudes[from] + (longitudes[to] - longitudes[from]) * t + jitter(0.0005));
+            addSegment(previous, node, speed, oneWay);
+            previous = node;
+        }
+        addSegment(previous, to, speed, oneWay);
+    }
+
+    private void addSegment(int from, int to, double speed, boolean oneWay) {
+        int weight = (int) (distance(from, to) / speed) + 1;
+        addEdge(from, to, weight);
+        if (!oneWay) {
+            addEdge(to, from, weight);
+        }
+    }
+
+    private void addEdge(int from, int to, int weight) {
+        if (3 * numberOfEdges == edges.length) {
+            edges = Arrays.copyOf(edges, 2 * edges.length);
+        }
+        edges[3 * numberOfEdges] = from;
+        edges[3 * numberOfEdges + 1] = to;
+        edges[3 * numberOfEdges + 2] = weight;
+        numberOfEdges++;
+    }
+
+    /**
+     * This method calculates the great-circle distance of two nodes in meters (haversine formula)
+     */
+    private double distance(int from, int to) {
+        double phi1 = Math.toRadians(latitudes[from]);
+        double phi2 = Math.toRadians(latitudes[to]);
+        double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDeltaLambda = Math.sin(Math.toRadians(longitudes[to] - longitudes[from]) / 2);
+        double h = sinDeltaPhi * sinDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinDeltaLambda * sinDeltaLambda;
+        return 2 * 6_371_000 * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * This method writes the graph with shuffled node ids, the edges are sorted by their source like in the
+     * .fmi files of the FMI
+     */
+    private void writeFmi(File file) throws IOException {
+        int[] newId = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            newId[i] = i;
+        }
+        for (int i = numberOfNodes - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = newId[i];
+            newId[i] = newId[j];
+            newId[j] = swap;
+        }
+        int[] oldId = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            oldId[newId[i]] = i;
+        }
+
+        long[] sortedEdges = new long[numberOfEdges];
+        for (int i = 0; i < numberOfEdges; i++) {
+            sortedEdges[i] = ((long) newId[edges[3 * i]] << 32) | i;
+        }
+        Arrays.sort(sortedEdges);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            writer.write("# Id : synthetic\n# Timestamp : 0\n# Type: maxspeed\n# Revision: 1\n\n");
+            writer.write(numberOfNodes + "\n" + numberOfEdges + "\n");
+            for (int id = 0; id < numberOfNodes; id++) {
+                int node = oldId[id];
+                writer.write(id + " " + (1000 + id) + " "
+                        + String.format(Locale.ROOT, "%.7f %.7f", latitudes[node], longitudes[node]) + " 0\n");
+            }
+            for (long sortedEdge : sortedEdges) {
+                int edge = (int) sortedEdge;
+                writer.write(newId[edges[3 * edge]] + " " + newId[edges[3 * edge + 1]] + " " + edges[3 * edge + 2]
+                        + " 3 50\n");
+            }
+        }
+    }
+
+    /**
+     * This method writes a synthetic graph from the command line
+     * example: java -cp target/benchmarks.jar benchmarks.SyntheticGraph synthetic.fmi 200
+     *
+     * @param args path of the .fmi file, optional number of intersections per row and column (default 100)
+     * @throws IOException in case the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        write(new File(args[0]), size, 42);
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class represents the access log of the MapServer. The request threads only put an entry into a bounded
+ * ring buffer, a background thread formats the entries as JSON lines and writes them. So a request never waits
+ * for the console or a file: if the buffer is full because the writer can't keep up, the entry is dropped and
+ * counted instead (see getDroppedEntries).
+ * <p>
+ * Successful requests are sampled with a configurable rate, failed ones (status 400 and above) are always logged.
+ * Query and detail of an entry are truncated, e.g. a distance matrix request with thousands of coordinates.
+ * <p>
+ * The ring buffer is lock-free: a request thread claims a slot by increasing the tail with compare-and-set and
+ * publishes the entry into it, the background thread is the only one which takes entries and increases the head.
+ */
+public class AccessLog {
+
+    /*
+     * number of entries the ring buffer holds, a power of two
+     */
+    static final int DEFAULT_CAPACITY = 1 << 13;
+    /*
+     * maximum number of characters of query and detail of an entry by default
+     */
+    static final int DEFAULT_MAX_LENGTH = 256;
+    /*
+     * time the background thread sleeps if the ring buffer is empty: the first time briefly, in a burst of
+     * requests the next entries follow soon, then twice as long each time up to the maximum
+     */
+    private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /*
+     * number of busy waits for the entry of a claimed slot until the background thread yields the processor
+     */
+    private static final int MAX_SPINS = 100;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    /*
+     * next position to claim by the request threads and next position to take by the background thread
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final double sampleRate;
+    private final int maxLength;
+    private final Writer out;
+    private Thread drainer;
+    private volatile boolean running = true;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * This class represents one request of the access log
+     */
+    private static final class Entry {
+        final long time;
+        final String endpoint;
+        final int status;
+        final long nanos;
+        final String query;
+        final String detail;
+
+        Entry(long time, String endpoint, int status, long nanos, String query, String detail) {
+            this.time = time;
+            this.endpoint = endpoint;
+            this.status = status;
+            this.nanos = nanos;
+            this.query = query;
+            this.detail = detail;
+        }
+    }
+
+    /**
+     * This method creates an AccessLog and starts its background thread, which writes the remaining entries
+     * on shutdown
+     *
+     * @param out        the writer of the log, it is flushed whenever the ring buffer is empty
+     * @param capacity   number of entries the ring buffer holds, rounded up to a power of two
+     * @param sampleRate share of the successful requests which are logged, between 0 and 1
+     * @param maxLength  maximum number of characters of query and detail of an entry
+     * @return the started access log
+     */
+    public static AccessLog start(Writer out, int capacity, double sampleRate, int maxLength) {
+        AccessLog accessLog = new AccessLog(out, capacity, sampleRate, maxLength);
+        //a platform thread, the writes block
+        accessLog.drainer = new Thread(accessLog::drain, "access-log");
+        accessLog.drainer.setDaemon(true);
+        accessLog.drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(accessLog::close));
+        return accessLog;
+    }
+
+    /**
+     * Class constructor of the AccessLog, the background thread is started by start
+     */
+    private AccessLog(Writer out, int capacity, double sampleRate, int maxLength) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("invalid sample rate " + sampleRate);
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("invalid maximum length " + maxLength);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.maxLength = maxLength;
+        this.out = out;
+    }
+
+    /**
+     * This method decides if a successful request is logged, so the handler only collects the details of the
+     * sampled requests
+     *
+     * @return true if the request is sampled
+     */
+    public boolean sample() {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * This method logs a request without waiting, the entry is dropped if the ring buffer is full
+     *
+     * @param time     start of the request in milliseconds since the epoch
+     * @param endpoint the endpoint, e.g. "request"
+     * @param status   status code of the response
+     * @param nanos    latency of the request in nanoseconds
+     * @param query    the query of the request or null
+     * @param detail   a description of the response or null
+     */
+    public void log(long time, String endpoint, int status, long nanos, String query, String detail) {
+        Entry entry = new Entry(time, endpoint, status, nanos, truncate(query), truncate(detail));
+        long position;
+        do {
+            position = tail.get();
+            //the slot of the position is free once the background thread took the entry a lap before
+            if (position - head >= slots.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+        slots.set((int) position & mask, entry);
+    }
+
+    /**
+     * This method returns the number of entries which were dropped because the ring buffer was full
+     *
+     * @return the number of dropped entries
+     */
+    public long getDroppedEntries() {
+        return dropped.sum();
+    }
+
+    /**
+     * This method writes the remaining entries and stops the background thread, it is called on shutdown
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method shortens a text to the maximum length and marks the number of removed characters
+     */
+    private String truncate(String text) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+        return text.substring(0, maxLength) + "...(" + (text.length() - maxLength) + " more)";
+    }
+
+    /**
+     * This method is the loop of the background thread: it takes the entries in the order of their positions
+     * and writes them, until the log is closed and the ring buffer is empty. It only sleeps if the buffer is
+     * empty, not while a request thread publishes the entry of a claimed slot.
+     */
+    private void drain() {
+        StringBuilder line = new StringBuilder(2 * DEFAULT_MAX_LENGTH);
+        boolean stopping = false;
+        long idleNanos = MIN_IDLE_NANOS;
+        while (true) {
+            int written = 0;
+            int spins = 0;
+            while (head != tail.get()) {
+                Entry entry = slots.get((int) head & mask);
+                if (entry == null) {
+                    //the slot is claimed, its entry follows in a moment and the following entries wait for it,
+                    //unless the request thread was descheduled in between
+                    if (++spins < MAX_SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                spins = 0;
+                slots.set((int) head & mask, null);
+                head = head + 1;
+                line.setLength(0);
+                format(line, entry);
+                write(line);
+                written++;
+            }
+            if (written > 0) {
+                flush();
+                idleNanos = MIN_IDLE_NANOS;
+            } else if (stopping) {
+                return;
+            } else if (!running) {
+                //one more pass for the entries which were published meanwhile
+                stopping = true;
+            } else {
+                LockSupport.parkNanos(this, idleNanos);
+                idleNanos = Math.min(2 * idleNanos, MAX_IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * This method formats an entry as one line of JSON
+     */
+    private static void format(StringBuilder line, Entry entry) {
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(entry.time))
+                .append("\",\"endpoint\":\"").append(entry.endpoint)
+                .append("\",\"status\":").append(entry.status)
+                .append(",\"duration_ms\":").append(entry.nanos / 1000 / 1000.0);
+        if (entry.query != null) {
+            line.append(",\"query\":");
+            appendString(line, entry.query);
+        }
+        if (entry.detail != null) {
+            line.append(",\"detail\":");
+            appendString(line, entry.detail);
+        }
+        line.append("}\n");
+    }
+
+    /**
+     * This method appends a text as JSON string
+     */
+    private static void appendString(StringBuilder line, String text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void write(CharSequence line) {
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            dropped.increment();
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            //the entries are lost, the next flush tries again
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class answers all queries of a .que file in parallel. The file is read in chunks, and while the workers
+ * answer the queries of one chunk the next chunk is read. Every worker borrows its own PathFinder from the
+ * pool of the graph, the results are stored in input order together with the latency of each query.
+ */
+public class BatchQueryRunner {
+
+    /*
+     * number of queries which are read from the file at once
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /*
+     * number of queries a worker takes from a chunk at once
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    private final Graph graph;
+    private final int numberOfThreads;
+
+    /*
+     * distances and latencies (in nanoseconds) of the last run in the order of the .que file
+     */
+    private int[] distances = new int[0];
+    private long[] latencies = new long[0];
+    private int numberOfQueries;
+    private long elapsedNanos;
+    /*
+     * latencies of the last run in ascending order, sorted on first use
+     */
+    private long[] sortedLatencies;
+
+    /**
+     * Class constructor of the BatchQueryRunner
+     *
+     * @param graph           the graph
+     * @param numberOfThreads number of workers
+     */
+    public BatchQueryRunner(Graph graph, int numberOfThreads) {
+        this.graph = graph;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * This method answers all queries of the .que file with the given algorithm
+     *
+     * @param quePath   path of the .que file (one query "source target" per line)
+     * @param algorithm the algorithm which solves the queries
+     * @throws IOException          in case the file can't be read
+     * @throws InterruptedException in case the thread is interrupted while it waits for the workers
+     */
+    public void run(String quePath, RoutingAlgorithm algorithm) throws IOException, InterruptedException {
+        numberOfQueries = 0;
+        sortedLatencies = null;
+        //the preprocessing isn't built by a worker which already holds a PathFinder and isn't measured
+        graph.prepare(algorithm);
+        ExecutorService workers = Executors.newFixedThreadPool(numberOfThreads);
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new FileReader(quePath), 1 << 16)) {
+            int[] chunk = readChunk(reader);
+            while (chunk.length > 0) {
+                int offset = numberOfQueries;
+                numberOfQueries += chunk.length / 2;
+                ensureCapacity(numberOfQueries);
+                List<Future<?>> tasks = submit(workers, chunk, offset, algorithm);
+                chunk = readChunk(reader);
+                await(tasks);
+            }
+        } finally {
+            workers.shutdown();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * This method reads the next queries of the file
+     *
+     * @param reader reader of the .que file
+     * @return pairs of source and target index of at most CHUNK_SIZE queries, empty at the end of the file
+     * @throws IOException in case the file can't be read
+     */
+    private int[] readChunk(BufferedReader reader) throws IOException {
+        int[] chunk = new int[2 * CHUNK_SIZE];
+        int count = 0;
+        String line;
+        while (count < CHUNK_SIZE && (line = reader.readLine()) != null) {
+            int separator = line.indexOf(' ');
+            if (separator < 0) {
+                continue;
+            }
+            int end = line.length();
+            while (end > separator + 1 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            //the file contains node ids of the graph file
+            chunk[2 * count] = graph.getIndexOfNodeId(Integer.parseInt(line, 0, separator, 10));
+            chunk[2 * count + 1] = graph.getIndexOfNodeId(Integer.parseInt(line, separator + 1, end, 10));
+            count++;
+        }
+        return Arrays.copyOf(chunk, 2 * count);
+    }
+
+    /**
+     * This method starts one task per worker. The tasks take blocks of queries from the chunk until all
+     * queries are answered.
+     *
+     * @return the started tasks
+     */
+    private List<Future<?>> submit(ExecutorService workers, int[] chunk, int offset, RoutingAlgorithm algorithm) {
+        AtomicInteger nextBlock = new AtomicInteger();
+        int queries = chunk.length / 2;
+        Callable<Void> task = () -> {
+            PathFinder pathFinder = graph.getPathFinderPool().acquire();
+            try {
+                int first;
+                while ((first = nextBlock.getAndAdd(BLOCK_SIZE)) < queries) {
+                    for (int i = first; i < Math.min(first + BLOCK_SIZE, queries); i++) {
+                        long queryStart = System.nanoTime();
+                        distances[offset + i] = pathFinder.oneToOne(chunk[2 * i], chunk[2 * i + 1], algorithm);
+                        latencies[offset + i] = System.nanoTime() - queryStart;
+                    }
+                }
+            } finally {
+                graph.getPathFinderPool().release(pathFinder);
+            }
+            return null;
+        };
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            tasks.add(workers.submit(task));
+        }
+        return tasks;
+    }
+
+    private static void await(List<Future<?>> tasks) throws InterruptedException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("query failed", e.getCause());
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > distances.length) {
+            int newLength = Math.max(capacity, 2 * distances.length);
+            distances = Arrays.copyOf(distances, newLength);
+            latencies = Arrays.copyOf(latencies, newLength);
+        }
+    }
+
+    public int getNumberOfQueries() {
+        return numberOfQueries;
+    }
+
+    /**
+     * This method returns the distances of the last run
+     *
+     * @return the distances in the order of the .que file
+     */
+    public int[] getDistances() {
+        return Arrays.copyOf(distances, numberOfQueries);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getQueriesPerSecond() {
+        return elapsedNanos == 0 ? 0 : numberOfQueries * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * This method returns a latency percentile of the last run (nearest rank)
+     *
+     * @param percentile percentile between 0 and 100
+     * @return the latency in nanoseconds
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (numberOfQueries == 0) {
+            return 0;
+        }
+        if (sortedLatencies == null) {
+            sortedLatencies = Arrays.copyOf(latencies, numberOfQueries);
+            Arrays.parallelSort(sortedLatencies);
+        }
+        int rank = (int) Math.ceil(percentile / 100 * numberOfQueries);
+        return sortedLatencies[Math.min(numberOfQueries - 1, Math.max(0, rank - 1))];
+    }
+
+    /**
+     * This method writes the distances of the last run line by line into the stream
+     *
+     * @param outputStream the stream
+     * @throws IOException in case the stream can't be written
+     */
+    public void writeDistances(OutputStream outputStream) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.US_ASCII), 1 << 16);
+        for (int i = 0; i < numberOfQueries; i++) {
+            writer.write(Integer.toString(distances[i]));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
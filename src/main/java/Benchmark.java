@@ -2,6 +2,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class Benchmark {
@@ -16,12 +19,58 @@ private static Graph graph;
 		double lat = Double.parseDouble(args[5]);
 		String quePath = args[7];
 		int sourceNodeId = Integer.parseInt(args[9]);
+		// optional: -algo [names of RoutingAlgorithms separated by ","], dijkstra by default
+		//           -batch [number of threads], answers the queries of the .que file in parallel
+		//           -order [name of a NodeOrder], renumbers the nodes internally, input by default
+		//           -tree-cache [megabytes], caches the shortest path trees of frequent sources
+		//           -tree-cache-off-heap, stores these trees outside of the heap
+		List<RoutingAlgorithm> algorithms = new ArrayList<>();
+		NodeOrder nodeOrder = NodeOrder.INPUT;
+		long treeCacheBudget = 0;
+		boolean treeCacheOffHeap = false;
+		boolean batch = false;
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		for (int i = 10; i < args.length; i++) {
+			if (args[i].equals("-algo") && i + 1 < args.length) {
+				for (String name : args[++i].split(",")) {
+					RoutingAlgorithm algorithm = RoutingAlgorithm.fromName(name);
+					if (algorithm == null) {
+						throw new IllegalArgumentException("Unknown algorithm: " + name);
+					}
+					algorithms.add(algorithm);
+				}
+			} else if (args[i].equals("-order") && i + 1 < args.length) {
+				nodeOrder = NodeOrder.fromName(args[++i]);
+				if (nodeOrder == null) {
+					throw new IllegalArgumentException("Unknown node order: " + args[i]);
+				}
+			} else if (args[i].equals("-tree-cache") && i + 1 < args.length) {
+				treeCacheBudget = Long.parseLong(args[++i]) << 20;
+			} else if (args[i].equals("-tree-cache-off-heap")) {
+				treeCacheOffHeap = true;
+			} else if (args[i].equals("-batch")) {
+				batch = true;
+				if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+					numberOfThreads = Integer.parseInt(args[++i]);
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+		}
+		if (algorithms.isEmpty()) {
+			algorithms.add(RoutingAlgorithm.DIJKSTRA);
+		}
+		if (!batch && algorithms.size() > 1) {
+			throw new IllegalArgumentException("Several algorithms can only be compared with -batch");
+		}
+		RoutingAlgorithm algorithm = algorithms.get(0);
 
 		// run benchmarks
 		System.out.println("Reading graph file and creating graph data structure (" + graphPath + ")");
 		long graphReadStart = System.currentTimeMillis();
 		try {
-			graph = new Graph(new File(graphPath));
+			graph = new Graph(new File(graphPath), nodeOrder);
+			graph.enableShortestPathTreeCache(treeCacheBudget, treeCacheOffHeap);
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
 		}
@@ -33,32 +82,48 @@ private static Graph graph;
 
 				System.out.println("Finding closest node to coordinates " + lon + " " + lat);
 				long nodeFindStart = System.currentTimeMillis();
-				double[] coords = {0.0, 0.0};
-				// TODO: find closest node here and write coordinates into coords
+				double[] coords = graph.getClosestDistance(lon, lat);
 
 				long nodeFindEnd = System.currentTimeMillis();
 				System.out.println("\tfinding node took " + (nodeFindEnd - nodeFindStart) + "ms: " + coords[0] + ", " + coords[1]);
 
-		System.out.println("Running one-to-one Dijkstras for queries in .que file " + quePath);
-		long queStart = System.currentTimeMillis();
-		try (BufferedReader bufferedReader = new BufferedReader(new FileReader(quePath))) {
-			String currLine;
-			while ((currLine = bufferedReader.readLine()) != null) {
-				int oneToOneSourceNodeId = Integer.parseInt(currLine.substring(0, currLine.indexOf(" ")));
-				int oneToOneTargetNodeId = Integer.parseInt(currLine.substring(currLine.indexOf(" ") + 1));
-				int oneToOneDistance = graph.findRouteAtoB(oneToOneSourceNodeId, oneToOneTargetNodeId);
-				System.out.println(oneToOneDistance);
+		if (batch) {
+			runBatch(quePath, algorithms, numberOfThreads);
+		} else {
+			System.out.println("Preparing " + algorithm.getName());
+			long prepareStart = System.currentTimeMillis();
+			graph.prepare(algorithm);
+			long prepareEnd = System.currentTimeMillis();
+			System.out.println("\tpreprocessing took " + (prepareEnd - prepareStart) + "ms");
+
+			System.out.println("Running one-to-one " + algorithm.getName() + " for queries in .que file " + quePath);
+			long queStart = System.currentTimeMillis();
+			List<Integer> distances = runQueries(quePath, algorithm, true);
+			long queEnd = System.currentTimeMillis();
+			System.out.println("\tprocessing .que file took " + (queEnd - queStart) + "ms");
+
+			if (algorithm != RoutingAlgorithm.DIJKSTRA && !distances.isEmpty()) {
+				System.out.println("Running one-to-one dijkstra as baseline for queries in .que file " + quePath);
+				long baselineStart = System.currentTimeMillis();
+				List<Integer> baselineDistances = runQueries(quePath, RoutingAlgorithm.DIJKSTRA, false);
+				long baselineEnd = System.currentTimeMillis();
+				int differences = 0;
+				for (int i = 0; i < distances.size(); i++) {
+					if (!distances.get(i).equals(baselineDistances.get(i))) {
+						differences++;
+					}
+				}
+				System.out.println("\tdijkstra took " + (baselineEnd - baselineStart) + "ms ("
+						+ String.format("%.3f", (double) (baselineEnd - baselineStart) / distances.size()) + "ms per query, "
+						+ algorithm.getName() + ": "
+						+ String.format("%.3f", (double) (queEnd - queStart) / distances.size()) + "ms per query, "
+						+ differences + " different distances)");
 			}
-		} catch (Exception e) {
-			System.out.println("Exception...");
-			e.printStackTrace();
 		}
-		long queEnd = System.currentTimeMillis();
-		System.out.println("\tprocessing .que file took " + (queEnd - queStart) + "ms");
 
 		System.out.println("Computing one-to-all Dijkstra from node id " + sourceNodeId);
 		long oneToAllStart = System.currentTimeMillis();
-		int[] oneToAllArray = graph.findRouteAtoAll(sourceNodeId);
+		int[] oneToAllArray = graph.findRouteAtoAll(graph.getIndexOfNodeId(sourceNodeId));
 		long oneToAllEnd = System.currentTimeMillis();
 		System.out.println("\tone-to-all Dijkstra took " + (oneToAllEnd - oneToAllStart) + "ms");
 
@@ -67,10 +132,99 @@ private static Graph graph;
 		System.out.print("Enter target node id... ");
 		scanner = new Scanner(System.in);
 		int targetNodeId = (scanner.nextInt());
-		int oneToAllDistance = oneToAllArray[targetNodeId];
+		int oneToAllDistance = oneToAllArray[graph.getIndexOfNodeId(targetNodeId)];
 		System.out.println("Distance from " + sourceNodeId + " to " + targetNodeId + " is " + oneToAllDistance);
 		scanner.close();
 	
 	}
 
+	/**
+	 * This method answers all queries of the .que file in parallel with each algorithm and reports the throughput
+	 * and latency percentiles. The distances of the first algorithm are printed, the distances of the other
+	 * algorithms are compared with them.
+	 *
+	 * @param quePath path of the .que file
+	 * @param algorithms the algorithms which solve the queries
+	 * @param numberOfThreads number of workers
+	 */
+	private static void runBatch(String quePath, List<RoutingAlgorithm> algorithms, int numberOfThreads) {
+		//every worker keeps its PathFinder for all queries
+		if (numberOfThreads > graph.getPathFinderPool().getMaxSize()) {
+			graph.limitSearches(numberOfThreads);
+		}
+		BatchQueryRunner runner = new BatchQueryRunner(graph, numberOfThreads);
+		int[] firstDistances = null;
+		try {
+			for (RoutingAlgorithm algorithm : algorithms) {
+				System.out.println("Preparing " + algorithm.getName());
+				long prepareStart = System.currentTimeMillis();
+				graph.prepare(algorithm);
+				long prepareEnd = System.currentTimeMillis();
+				System.out.println("\tpreprocessing took " + (prepareEnd - prepareStart) + "ms");
+
+				System.out.println("Running one-to-one " + algorithm.getName() + " in batch mode with " + numberOfThreads
+						+ " threads for queries in .que file " + quePath);
+				runner.run(quePath, algorithm);
+				System.out.println("\tprocessing .que file took " + runner.getElapsedNanos() / 1_000_000 + "ms ("
+						+ runner.getNumberOfQueries() + " queries, "
+						+ String.format("%.1f", runner.getQueriesPerSecond()) + " queries/s)");
+				System.out.println("\tlatency p50 " + micros(runner.getLatencyPercentile(50))
+						+ ", p90 " + micros(runner.getLatencyPercentile(90))
+						+ ", p99 " + micros(runner.getLatencyPercentile(99))
+						+ ", p99.9 " + micros(runner.getLatencyPercentile(99.9))
+						+ ", max " + micros(runner.getLatencyPercentile(100)));
+
+				if (firstDistances == null) {
+					firstDistances = runner.getDistances();
+					runner.writeDistances(System.out);
+				} else {
+					int[] distances = runner.getDistances();
+					int differences = 0;
+					for (int i = 0; i < distances.length; i++) {
+						if (distances[i] != firstDistances[i]) {
+							differences++;
+						}
+					}
+					System.out.println("\t" + differences + " different distances than " + algorithms.get(0).getName());
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			System.out.println("Exception...");
+			e.printStackTrace();
+		}
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1fus", nanos / 1000.0);
+	}
+
+	/**
+	 * This method answers all queries of the .que file with the given algorithm
+	 *
+	 * @param quePath path of the .que file
+	 * @param algorithm the algorithm which solves the queries
+	 * @param printDistances true if every distance is printed
+	 * @return the distances of all queries in the order of the file
+	 */
+	private static List<Integer> runQueries(String quePath, RoutingAlgorithm algorithm, boolean printDistances) {
+		List<Integer> distances = new ArrayList<>();
+		try (BufferedReader bufferedReader = new BufferedReader(new FileReader(quePath))) {
+			String currLine;
+			while ((currLine = bufferedReader.readLine()) != null) {
+				int oneToOneSourceNodeId = Integer.parseInt(currLine.substring(0, currLine.indexOf(" ")));
+				int oneToOneTargetNodeId = Integer.parseInt(currLine.substring(currLine.indexOf(" ") + 1));
+				int oneToOneDistance = graph.findRouteAtoB(graph.getIndexOfNodeId(oneToOneSourceNodeId),
+						graph.getIndexOfNodeId(oneToOneTargetNodeId), algorithm);
+				if (printDistances) {
+					System.out.println(oneToOneDistance);
+				}
+				distances.add(oneToOneDistance);
+			}
+		} catch (Exception e) {
+			System.out.println("Exception...");
+			e.printStackTrace();
+		}
+		return distances;
+	}
+
 }
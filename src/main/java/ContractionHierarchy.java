@@ -0,0 +1,634 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the Contraction Hierarchy of a graph. Every node gets a rank, and the nodes are
+ * contracted in the order of their ranks: a contracted node is removed from the graph and shortcuts between
+ * its neighbors keep all shortest paths of the remaining graph. A shortest path query then only has to search
+ * upwards (to nodes with a higher rank) from the starting point and from the end point.
+ * <p>
+ * The edges are stored in two CSR structures like the graph itself:
+ * the upward edges of node v lead from v to nodes with a higher rank,
+ * the downward edges of node v lead from nodes with a higher rank to v (stored at v, so the backward search
+ * can use them directly). Every edge stores its middle node (-1 for an original edge), which is used to unpack
+ * shortcuts into the original path.
+ * <p>
+ * File layout (little endian): magic, version, node count, upward edge count, downward edge count,
+ * graph fingerprint, followed by the int sections rank, upward offsets, targets, weights, middle nodes
+ * and downward offsets, sources, weights, middle nodes.
+ */
+public class ContractionHierarchy {
+
+    /*
+     * "CHG1" in little endian, marks a file as Contraction Hierarchy file
+     */
+    private static final int MAGIC = 0x31474843;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    /*
+     * number of nodes a witness search visits at most before it gives up and a shortcut is added
+     */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    /*
+     * smaller limit for the simulated contractions which only estimate the priority of a node
+     */
+    private static final int PRIORITY_SETTLE_LIMIT = 50;
+
+    /*
+     * contraction order of all nodes, nodes with a higher rank were contracted later
+     */
+    private final int[] rank;
+    /*
+     * upward edges: upTargetList[upOffsetList[v]] to upTargetList[upOffsetList[v + 1] - 1] are the targets of v
+     */
+    private final int[] upOffsetList;
+    private final int[] upTargetList;
+    private final int[] upWeightList;
+    private final int[] upMiddleList;
+    /*
+     * downward edges: downSourceList[downOffsetList[v]] to downSourceList[downOffsetList[v + 1] - 1] are the
+     * sources of the edges which lead to v
+     */
+    private final int[] downOffsetList;
+    private final int[] downSourceList;
+    private final int[] downWeightList;
+    private final int[] downMiddleList;
+
+    /**
+     * Class constructor of the ContractionHierarchy
+     */
+    private ContractionHierarchy(int[] rank, int[] upOffsetList, int[] upTargetList, int[] upWeightList,
+                                 int[] upMiddleList, int[] downOffsetList, int[] downSourceList,
+                                 int[] downWeightList, int[] downMiddleList) {
+        this.rank = rank;
+        this.upOffsetList = upOffsetList;
+        this.upTargetList = upTargetList;
+        this.upWeightList = upWeightList;
+        this.upMiddleList = upMiddleList;
+        this.downOffsetList = downOffsetList;
+        this.downSourceList = downSourceList;
+        this.downWeightList = downWeightList;
+        this.downMiddleList = downMiddleList;
+    }
+
+    /**
+     * This method contracts all nodes of the graph. Each round contracts a set of nodes in parallel: every node
+     * whose priority is smaller than the priorities of all its neighbors. These nodes are independent, so their
+     * witness searches ignore all nodes of the round and the shortcuts of one node can't make the shortcuts of
+     * another one unnecessary.
+     *
+     * @param graph the graph
+     * @return the Contraction Hierarchy of the graph
+     */
+    public static ContractionHierarchy build(Graph graph) {
+        return new Builder(graph).build();
+    }
+
+    public int getRank(int nodeIDX) {
+        return rank[nodeIDX];
+    }
+
+    public int getUpOffsetOfNode(int nodeIDX) {
+        return upOffsetList[nodeIDX];
+    }
+
+    public int getTrgIDXofUpEdge(int edgeIDX) {
+        return upTargetList[edgeIDX];
+    }
+
+    public int getWeightOfUpEdge(int edgeIDX) {
+        return upWeightList[edgeIDX];
+    }
+
+    public int getDownOffsetOfNode(int nodeIDX) {
+        return downOffsetList[nodeIDX];
+    }
+
+    public int getSrcIDXofDownEdge(int edgeIDX) {
+        return downSourceList[edgeIDX];
+    }
+
+    public int getWeightOfDownEdge(int edgeIDX) {
+        return downWeightList[edgeIDX];
+    }
+
+    /**
+     * This method returns the number of upward and downward edges, including the shortcuts
+     *
+     * @return number of edges
+     */
+    public int getNumberOfEdges() {
+        return upTargetList.length + downSourceList.length;
+    }
+
+    /**
+     * This method unpacks an edge of the hierarchy into the original edges and passes all nodes of the
+     * original path after the source node (in the order of the path) to the consumer
+     *
+     * @param srcIDX source node of the edge
+     * @param trgIDX target node of the edge
+     * @param path   consumer of the path nodes
+     */
+    public void unpackEdge(int srcIDX, int trgIDX, IntConsumer path) {
+        int middle = middleNode(srcIDX, trgIDX);
+        if (middle == -1) {
+            path.accept(trgIDX);
+            return;
+        }
+        //the middle node was contracted before both nodes, so the depth of the recursion is bounded by the ranks
+        unpackEdge(srcIDX, middle, path);
+        unpackEdge(middle, trgIDX, path);
+    }
+
+    /**
+     * This method returns the middle node of the edge between two nodes
+     *
+     * @param srcIDX source node of the edge
+     * @param trgIDX target node of the edge
+     * @return the middle node or -1 if the edge is an original edge
+     */
+    private int middleNode(int srcIDX, int trgIDX) {
+        if (rank[srcIDX] < rank[trgIDX]) {
+            for (int i = upOffsetList[srcIDX]; i < upOffsetList[srcIDX + 1]; i++) {
+                if (upTargetList[i] == trgIDX) {
+                    return upMiddleList[i];
+                }
+            }
+        } else {
+            for (int i = downOffsetList[trgIDX]; i < downOffsetList[trgIDX + 1]; i++) {
+                if (downSourceList[i] == srcIDX) {
+                    return downMiddleList[i];
+                }
+            }
+        }
+        throw new IllegalStateException("no edge from " + srcIDX + " to " + trgIDX + " in the hierarchy");
+    }
+
+    /**
+     * This method writes the Contraction Hierarchy into the given file
+     *
+     * @param file        the target file
+     * @param fingerprint fingerprint of the graph, see Graph.getFingerprint()
+     * @throws IOException in case the file can't be written
+     */
+    public void save(File file, long fingerprint) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rank.length).putInt(upTargetList.length)
+                    .putInt(downSourceList.length).putLong(fingerprint);
+            for (int[] section : new int[][]{rank, upOffsetList, upTargetList, upWeightList, upMiddleList,
+                    downOffsetList, downSourceList, downWeightList, downMiddleList}) {
+                for (int value : section) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, channel);
+                    }
+                    buffer.putInt(value);
+                }
+            }
+            flush(buffer, channel);
+        }
+    }
+
+    /**
+     * This method writes the content of the buffer into the channel and clears the buffer
+     *
+     * @param buffer  the buffer
+     * @param channel the channel
+     * @throws IOException in case the channel can't be written
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * This method loads a Contraction Hierarchy from the given file
+     *
+     * @param file  the hierarchy file
+     * @param graph the graph the hierarchy is used for
+     * @return the hierarchy or null if the file doesn't exist or belongs to another graph
+     * @throws IOException in case the file can't be read
+     */
+    public static ContractionHierarchy load(File file, Graph graph) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            int numberOfNodes = header.getInt();
+            int upCount = header.getInt();
+            int downCount = header.getInt();
+            long fingerprint = header.getLong();
+            if (numberOfNodes != graph.getNumberOfNodes() || fingerprint != graph.getFingerprint()
+                    || channel.size() != HEADER_SIZE + 4L * (3L * numberOfNodes + 2 + 3L * upCount + 3L * downCount)) {
+                return null;
+            }
+
+            int[][] sections = {new int[numberOfNodes], new int[numberOfNodes + 1], new int[upCount],
+                    new int[upCount], new int[upCount], new int[numberOfNodes + 1], new int[downCount],
+                    new int[downCount], new int[downCount]};
+            long position = HEADER_SIZE;
+            for (int[] section : sections) {
+                IntBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * section.length)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                values.get(section);
+                position += 4L * section.length;
+            }
+            return new ContractionHierarchy(sections[0], sections[1], sections[2], sections[3], sections[4],
+                    sections[5], sections[6], sections[7], sections[8]);
+        }
+    }
+
+    /**
+     * This class holds the state of the contraction: the remaining graph as modifiable adjacency lists.
+     * Each list stores triples of neighbor, weight and middle node. The lists of a node are final as soon
+     * as it's contracted and become its upward and downward edges.
+     */
+    private static final class Builder {
+        private final int numberOfNodes;
+        /*
+         * outgoing and incoming edges of each node and the number of triples inside each list
+         */
+        private final int[][] out;
+        private final int[][] in;
+        private final int[] outSize;
+        private final int[] inSize;
+        private final boolean[] contracted;
+        /*
+         * nodes which have a contracted neighbor whose edges have to be removed from their lists
+         */
+        private final boolean[] dirty;
+        private final int[] rank;
+        /*
+         * number of contracted neighbors and depth in the hierarchy, both are part of the priority
+         * and spread the contraction evenly over the graph
+         */
+        private final int[] contractedNeighbors;
+        private final int[] level;
+        private final int[] priority;
+        /*
+         * arrays of the witness searches which aren't in use, every parallel task borrows its own. They are
+         * owned by the builder, so they are garbage as soon as the contraction is finished
+         */
+        private final ConcurrentLinkedQueue<WitnessSearch> witnessSearches = new ConcurrentLinkedQueue<>();
+
+        Builder(Graph graph) {
+            this.numberOfNodes = graph.getNumberOfNodes();
+            this.out = new int[numberOfNodes][];
+            this.in = new int[numberOfNodes][];
+            this.outSize = new int[numberOfNodes];
+            this.inSize = new int[numberOfNodes];
+            this.contracted = new boolean[numberOfNodes];
+            this.dirty = new boolean[numberOfNodes];
+            this.rank = new int[numberOfNodes];
+            this.contractedNeighbors = new int[numberOfNodes];
+            this.level = new int[numberOfNodes];
+            this.priority = new int[numberOfNodes];
+
+            //each node only writes its own lists, parallel edges are merged and self loops are dropped
+            IntStream.range(0, numberOfNodes).parallel().forEach(node -> {
+                out[node] = new int[3 * (graph.getOffsetOfNode(node + 1) - graph.getOffsetOfNode(node))];
+                for (int i = graph.getOffsetOfNode(node); i < graph.getOffsetOfNode(node + 1); i++) {
+                    if (graph.getTrgIDXofEdge(i) != node) {
+                        addOrDecrease(true, node, graph.getTrgIDXofEdge(i), graph.getWeightOfEdge(i), -1);
+                    }
+                }
+                in[node] = new int[3 * (graph.getReverseOffsetOfNode(node + 1) - graph.getReverseOffsetOfNode(node))];
+                for (int i = graph.getReverseOffsetOfNode(node); i < graph.getReverseOffsetOfNode(node + 1); i++) {
+                    if (graph.getSrcIDXofReverseEdge(i) != node) {
+                        addOrDecrease(false, node, graph.getSrcIDXofReverseEdge(i), graph.getWeightOfReverseEdge(i), -1);
+                    }
+                }
+            });
+        }
+
+        ContractionHierarchy build() {
+            int[] remaining = IntStream.range(0, numberOfNodes).toArray();
+            IntStream.of(remaining).parallel().forEach(node -> priority[node] = calculatePriority(node));
+            int nextRank = 0;
+
+            while (remaining.length > 0) {
+                int[] selected = IntStream.of(remaining).parallel().filter(this::isLocalMinimum).toArray();
+                for (int node : selected) {
+                    contracted[node] = true;
+                    rank[node] = nextRank++;
+                }
+
+                int[][] shortcuts = new int[selected.length][];
+                IntStream.range(0, selected.length).parallel().forEach(i -> {
+                    WitnessSearch witnessSearch = borrowWitnessSearch();
+                    shortcuts[i] = witnessSearch.shortcuts(selected[i], WITNESS_SETTLE_LIMIT);
+                    witnessSearches.offer(witnessSearch);
+                });
+
+                for (int i = 0; i < selected.length; i++) {
+                    int node = selected[i];
+                    markNeighbors(node, out[node], outSize[node]);
+                    markNeighbors(node, in[node], inSize[node]);
+                    int[] nodeShortcuts = shortcuts[i];
+                    for (int j = 0; j < nodeShortcuts.length; j += 3) {
+                        addOrDecrease(true, nodeShortcuts[j], nodeShortcuts[j + 1], nodeShortcuts[j + 2], node);
+                        addOrDecrease(false, nodeShortcuts[j + 1], nodeShortcuts[j], nodeShortcuts[j + 2], node);
+                    }
+                }
+
+                remaining = IntStream.of(remaining).parallel().filter(node -> !contracted[node]).toArray();
+                //only the neighbors of contracted nodes changed, so only their priorities are updated. The witness
+                //searches of the priorities read the lists of other nodes, so all lists are compacted first
+                int[] changed = IntStream.of(remaining).parallel().filter(node -> dirty[node]).toArray();
+                IntStream.of(changed).parallel().forEach(node -> {
+                    outSize[node] = removeContracted(out[node], outSize[node]);
+                    inSize[node] = removeContracted(in[node], inSize[node]);
+                    dirty[node] = false;
+                });
+                IntStream.of(changed).parallel().forEach(node -> priority[node] = calculatePriority(node));
+            }
+            witnessSearches.clear();
+
+            int[] upOffsetList = offsets(outSize);
+            int[] downOffsetList = offsets(inSize);
+            int[] upTargetList = new int[upOffsetList[numberOfNodes]];
+            int[] upWeightList = new int[upTargetList.length];
+            int[] upMiddleList = new int[upTargetList.length];
+            int[] downSourceList = new int[downOffsetList[numberOfNodes]];
+            int[] downWeightList = new int[downSourceList.length];
+            int[] downMiddleList = new int[downSourceList.length];
+            IntStream.range(0, numberOfNodes).parallel().forEach(node -> {
+                for (int i = 0; i < outSize[node]; i++) {
+                    upTargetList[upOffsetList[node] + i] = out[node][3 * i];
+                    upWeightList[upOffsetList[node] + i] = out[node][3 * i + 1];
+                    upMiddleList[upOffsetList[node] + i] = out[node][3 * i + 2];
+                }
+                for (int i = 0; i < inSize[node]; i++) {
+                    downSourceList[downOffsetList[node] + i] = in[node][3 * i];
+                    downWeightList[downOffsetList[node] + i] = in[node][3 * i + 1];
+                    downMiddleList[downOffsetList[node] + i] = in[node][3 * i + 2];
+                }
+            });
+            return new ContractionHierarchy(rank, upOffsetList, upTargetList, upWeightList, upMiddleList,
+                    downOffsetList, downSourceList, downWeightList, downMiddleList);
+        }
+
+        /**
+         * This method calculates the priority of a node: the edge difference of its contraction plus the number
+         * of contracted neighbors and its level. Nodes with a small priority are contracted first.
+         *
+         * @param node node index
+         * @return the priority
+         */
+        private int calculatePriority(int node) {
+            WitnessSearch witnessSearch = borrowWitnessSearch();
+            int shortcuts = witnessSearch.shortcuts(node, PRIORITY_SETTLE_LIMIT).length / 3;
+            witnessSearches.offer(witnessSearch);
+            int edgeDifference = shortcuts - outSize[node] - inSize[node];
+            return 2 * edgeDifference + contractedNeighbors[node] + level[node];
+        }
+
+        /**
+         * This method borrows the arrays of a witness search, they are created if all are in use
+         *
+         * @return a witness search which is used by the caller until it's offered to witnessSearches again
+         */
+        private WitnessSearch borrowWitnessSearch() {
+            WitnessSearch witnessSearch = witnessSearches.poll();
+            return witnessSearch == null ? new WitnessSearch(this) : witnessSearch;
+        }
+
+        /**
+         * This method tells if the node has a smaller priority than all its neighbors. Equal priorities
+         * are decided by a hash of the node index, so neighboring nodes are never selected together.
+         *
+         * @param node node index
+         * @return true if the node is contracted in this round
+         */
+        private boolean isLocalMinimum(int node) {
+            return isSmallerThanNeighbors(node, out[node], outSize[node])
+                    && isSmallerThanNeighbors(node, in[node], inSize[node]);
+        }
+
+        private boolean isSmallerThanNeighbors(int node, int[] edges, int size) {
+            for (int i = 0; i < size; i++) {
+                int neighbor = edges[3 * i];
+                if (priority[neighbor] < priority[node]
+                        || (priority[neighbor] == priority[node] && hash(neighbor) < hash(node))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(int node) {
+            //multiplication with an odd number is a bijection, so different nodes have different hashes
+            return node * 0x9E3779B9;
+        }
+
+        /**
+         * This method marks all neighbors of a contracted node as dirty and updates their priority terms
+         */
+        private void markNeighbors(int node, int[] edges, int size) {
+            for (int i = 0; i < size; i++) {
+                int neighbor = edges[3 * i];
+                dirty[neighbor] = true;
+                contractedNeighbors[neighbor]++;
+                level[neighbor] = Math.max(level[neighbor], level[node] + 1);
+            }
+        }
+
+        /**
+         * This method removes all triples of contracted neighbors from a list
+         *
+         * @return the new number of triples
+         */
+        private int removeContracted(int[] edges, int size) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (!contracted[edges[3 * i]]) {
+                    edges[3 * newSize] = edges[3 * i];
+                    edges[3 * newSize + 1] = edges[3 * i + 1];
+                    edges[3 * newSize + 2] = edges[3 * i + 2];
+                    newSize++;
+                }
+            }
+            return newSize;
+        }
+
+        /**
+         * This method adds an edge to the outgoing or incoming list of a node. If the list already contains an
+         * edge to the neighbor, only the smaller weight is kept.
+         *
+         * @param outgoing true for the outgoing list, false for the incoming list
+         * @param node     owner of the list
+         * @param neighbor the other node of the edge
+         * @param weight   weight of the edge
+         * @param middle   middle node of the edge or -1
+         */
+        private void addOrDecrease(boolean outgoing, int node, int neighbor, int weight, int middle) {
+            int[] edges = outgoing ? out[node] : in[node];
+            int size = outgoing ? outSize[node] : inSize[node];
+            for (int i = 0; i < size; i++) {
+                if (edges[3 * i] == neighbor) {
+                    if (weight < edges[3 * i + 1]) {
+                        edges[3 * i + 1] = weight;
+                        edges[3 * i + 2] = middle;
+                    }
+                    return;
+                }
+            }
+            if (3 * size == edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(6, 2 * edges.length));
+                if (outgoing) {
+                    out[node] = edges;
+                } else {
+                    in[node] = edges;
+                }
+            }
+            edges[3 * size] = neighbor;
+            edges[3 * size + 1] = weight;
+            edges[3 * size + 2] = middle;
+            if (outgoing) {
+                outSize[node]++;
+            } else {
+                inSize[node]++;
+            }
+        }
+
+        private int[] offsets(int[] sizes) {
+            int[] offsets = new int[numberOfNodes + 1];
+            for (int node = 0; node < numberOfNodes; node++) {
+                offsets[node + 1] = offsets[node] + sizes[node];
+            }
+            return offsets;
+        }
+
+        /**
+         * This class represents the witness searches of one parallel task: Dijkstra searches in the remaining
+         * graph which look for paths between two neighbors of a node that don't use the node itself.
+         */
+        private static final class WitnessSearch {
+            private final Builder builder;
+            private final int[] distance;
+            private final int[] stamp;
+            private final int[] targetStamp;
+            private final IndexedMinHeap queue;
+            private int generation;
+
+            WitnessSearch(Builder builder) {
+                this.builder = builder;
+                this.distance = new int[builder.numberOfNodes];
+                this.stamp = new int[builder.numberOfNodes];
+                this.targetStamp = new int[builder.numberOfNodes];
+                this.queue = new IndexedMinHeap(builder.numberOfNodes);
+            }
+
+            /**
+             * This method calculates the shortcuts which are needed if the node is contracted. A shortcut from u
+             * to w is needed if no path from u to w without the node (and without contracted nodes) is as short as
+             * the path over the node. If a search gives up, the shortcut is added anyway.
+             *
+             * @param node        the node which is contracted
+             * @param settleLimit maximum number of visited nodes per search
+             * @return triples of source, target and weight of all shortcuts
+             */
+            int[] shortcuts(int node, int settleLimit) {
+                int[] edgesIn = builder.in[node];
+                int[] edgesOut = builder.out[node];
+                int maxOutWeight = 0;
+                for (int i = 0; i < builder.outSize[node]; i++) {
+                    maxOutWeight = Math.max(maxOutWeight, edgesOut[3 * i + 1]);
+                }
+
+                int[] shortcuts = new int[0];
+                int count = 0;
+                for (int i = 0; i < builder.inSize[node]; i++) {
+                    int srcIDX = edgesIn[3 * i];
+                    int srcWeight = edgesIn[3 * i + 1];
+                    if (builder.contracted[srcIDX]) {
+                        continue;
+                    }
+                    search(srcIDX, node, srcWeight + maxOutWeight, settleLimit);
+
+                    for (int j = 0; j < builder.outSize[node]; j++) {
+                        int trgIDX = edgesOut[3 * j];
+                        int viaDistance = srcWeight + edgesOut[3 * j + 1];
+                        if (trgIDX == srcIDX || builder.contracted[trgIDX]
+                                || (stamp[trgIDX] == generation && distance[trgIDX] <= viaDistance)) {
+                            continue;
+                        }
+                        if (3 * count == shortcuts.length) {
+                            shortcuts = Arrays.copyOf(shortcuts, Math.max(12, 2 * shortcuts.length));
+                        }
+                        shortcuts[3 * count] = srcIDX;
+                        shortcuts[3 * count + 1] = trgIDX;
+                        shortcuts[3 * count + 2] = viaDistance;
+                        count++;
+                    }
+                }
+                return Arrays.copyOf(shortcuts, 3 * count);
+            }
+
+            /**
+             * This method runs a Dijkstra search from the source node which ignores the excluded node and all
+             * contracted nodes and stops at the distance limit or after settleLimit visited nodes
+             */
+            private void search(int srcIDX, int excluded, int maxDistance, int settleLimit) {
+                queue.clear();
+                generation++;
+                if (generation == Integer.MAX_VALUE) {
+                    Arrays.fill(stamp, 0);
+                    Arrays.fill(targetStamp, 0);
+                    generation = 1;
+                }
+                //the search can stop as soon as all neighbors the node leads to are visited
+                int openTargets = 0;
+                for (int i = 0; i < builder.outSize[excluded]; i++) {
+                    int trgIDX = builder.out[excluded][3 * i];
+                    if (trgIDX != srcIDX && !builder.contracted[trgIDX] && targetStamp[trgIDX] != generation) {
+                        targetStamp[trgIDX] = generation;
+                        openTargets++;
+                    }
+                }
+                stamp[srcIDX] = generation;
+                distance[srcIDX] = 0;
+                queue.insertOrDecrease(srcIDX, 0);
+
+                int settled = 0;
+                while (openTargets > 0 && !queue.isEmpty() && queue.peekKey() <= maxDistance && settled++ < settleLimit) {
+                    int node = queue.poll();
+                    if (targetStamp[node] == generation) {
+                        openTargets--;
+                    }
+                    int nodeDistance = distance[node];
+                    int[] edges = builder.out[node];
+                    for (int i = 0; i < builder.outSize[node]; i++) {
+                        int trgIDX = edges[3 * i];
+                        if (trgIDX == excluded || builder.contracted[trgIDX]) {
+                            continue;
+                        }
+                        int newDistance = nodeDistance + edges[3 * i + 1];
+                        if (stamp[trgIDX] != generation || newDistance < distance[trgIDX]) {
+                            stamp[trgIDX] = generation;
+                            distance[trgIDX] = newDistance;
+                            queue.insertOrDecrease(trgIDX, newDistance);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
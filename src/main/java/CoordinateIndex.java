@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+/**
+ * This class represents an index from coordinates to node indices: an open-addressing hash map from the
+ * fixed-point coordinate (latitude and longitude packed into one long) to the node index. Looking up the
+ * coordinate of a node takes constant time instead of a scan over all nodes.
+ * <p>
+ * If several nodes have the same coordinate, the index returns the node with the smallest index.
+ */
+public class CoordinateIndex {
+
+    /*
+     * marks an empty slot of the table, no node has this key because the latitude would be 0x80000000
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /*
+     * keys and node indices of all slots, the length is a power of two and at least twice the number of nodes
+     */
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+
+    /**
+     * Class constructor of the CoordinateIndex. The index is built for all nodes of the graph.
+     *
+     * @param graph the graph
+     */
+    public CoordinateIndex(Graph graph) {
+        int numberOfNodes = graph.getNumberOfNodes();
+        int capacity = Integer.highestOneBit(Math.max(2, numberOfNodes) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+
+        for (int node = 0; node < numberOfNodes; node++) {
+            long key = key(graph.getFixedLatitudeOfNode(node), graph.getFixedLongitudeOfNode(node));
+            int slot = slot(key);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            //the first node with a coordinate stays in the index
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                values[slot] = node;
+            }
+        }
+    }
+
+    /**
+     * This method returns the node with the given fixed-point coordinate
+     *
+     * @param fixedLatitude  latitude multiplied by Graph.COORDINATE_SCALE
+     * @param fixedLongitude longitude multiplied by Graph.COORDINATE_SCALE
+     * @return the node index or -1 if no node has this coordinate
+     */
+    public int get(int fixedLatitude, int fixedLongitude) {
+        long key = key(fixedLatitude, fixedLongitude);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static long key(int fixedLatitude, int fixedLongitude) {
+        return ((long) fixedLatitude << 32) | (fixedLongitude & 0xFFFFFFFFL);
+    }
+
+    /**
+     * This method calculates the first slot of a key, the multiplication spreads coordinates which only differ
+     * in the last digits over the whole table
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
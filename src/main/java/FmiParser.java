@@ -0,0 +1,514 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * This class parses .fmi files on byte level. The file is memory-mapped and split into line-aligned chunks
+ * which are parsed on all cores without creating a String per line.
+ * <p>
+ * The parser works in two passes: the first pass counts the lines of every chunk, so the second pass
+ * knows the global line number of each chunk and can write every node and edge directly to its final index.
+ */
+public class FmiParser {
+
+    /*
+     * lower and upper bound for the size of a chunk in bytes
+     */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+    /*
+     * size of the window which is read to find the end of a line
+     */
+    private static final int LINE_SEARCH_WINDOW = 4096;
+    /*
+     * number of decimal places of the fixed-point coordinates (see Graph.COORDINATE_SCALE)
+     */
+    private static final int COORDINATE_DECIMALS = 7;
+
+    private final File file;
+    private int nodeCount;
+    private int edgeCount;
+
+    /*
+     * latitude and longitude of each node in fixed-point representation
+     */
+    private int[] latitudeList;
+    private int[] longitudeList;
+    /*
+     * source of each edge, only needed to build the offsetList
+     */
+    private int[] sourceList;
+    /*
+     * target and weight of each edge
+     */
+    private int[] targetList;
+    private int[] weightList;
+    /*
+     * the offsets of all nodes
+     */
+    private int[] offsetList;
+
+    private double minX = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Class constructor of the FmiParser
+     *
+     * @param file the .fmi file
+     */
+    private FmiParser(File file) {
+        this.file = file;
+    }
+
+    /**
+     * This method parses the given .fmi file
+     *
+     * @param file the .fmi file
+     * @return the parser which holds all parsed data structures
+     * @throws IOException in case the file can't be read
+     * @throws IllegalStateException in case the file is truncated or the edges aren't sorted by their source
+     */
+    public static FmiParser parse(File file) throws IOException {
+        FmiParser parser = new FmiParser(file);
+        parser.run();
+        return parser;
+    }
+
+    /**
+     * This method reads the header, splits the data section into chunks and parses them in parallel.
+     *
+     * @throws IOException in case the file can't be read
+     */
+    private void run() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = readHeader(channel);
+
+            latitudeList = new int[nodeCount];
+            longitudeList = new int[nodeCount];
+            sourceList = new int[edgeCount];
+            targetList = new int[edgeCount];
+            weightList = new int[edgeCount];
+            offsetList = new int[nodeCount + 1];
+
+            long[] chunkStarts = splitIntoChunks(channel, dataStart, size);
+            int chunks = chunkStarts.length - 1;
+
+            //first pass: count the lines of each chunk
+            long[] lineCounts = new long[chunks];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                lineCounts[chunk] = countLines(map(channel, chunkStarts[chunk], chunkStarts[chunk + 1]));
+            });
+
+            long[] firstLines = new long[chunks];
+            long lines = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                firstLines[chunk] = lines;
+                lines += lineCounts[chunk];
+            }
+            if (lines < (long) nodeCount + edgeCount) {
+                throw new IllegalStateException(file + " is truncated: expected " + ((long) nodeCount + edgeCount)
+                        + " node and edge lines, found " + lines);
+            }
+
+            //second pass: parse nodes and edges, each chunk collects its own bounds
+            int[][] chunkBounds = new int[chunks][];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                chunkBounds[chunk] = parseChunk(map(channel, chunkStarts[chunk], chunkStarts[chunk + 1]), firstLines[chunk]);
+            });
+            for (int[] bounds : chunkBounds) {
+                minX = Math.min(minX, bounds[0] / Graph.COORDINATE_SCALE);
+                maxX = Math.max(maxX, bounds[1] / Graph.COORDINATE_SCALE);
+                minY = Math.min(minY, bounds[2] / Graph.COORDINATE_SCALE);
+                maxY = Math.max(maxY, bounds[3] / Graph.COORDINATE_SCALE);
+            }
+        }
+
+        buildOffsetList();
+        sourceList = null;
+    }
+
+    /**
+     * This method skips the comment lines and reads the node count and edge count
+     *
+     * @param channel the file channel
+     * @return the position of the first node line
+     * @throws IOException in case the file can't be read
+     */
+    private long readHeader(FileChannel channel) throws IOException {
+        long position = 0;
+        int valuesRead = 0;
+        long[] values = new long[2];
+
+        while (valuesRead < 2) {
+            if (position >= channel.size()) {
+                throw new IllegalStateException(file + " has no node and edge count");
+            }
+            long end = findLineEnd(channel, position);
+            String line = readText(channel, position, end).trim();
+            position = end + 1;
+            //skip comments and empty lines
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            values[valuesRead++] = Long.parseLong(line);
+        }
+
+        nodeCount = Math.toIntExact(values[0]);
+        edgeCount = Math.toIntExact(values[1]);
+        return position;
+    }
+
+    /**
+     * This method reads the text between start and end
+     *
+     * @param channel the file channel
+     * @param start start of the text
+     * @param end end of the text (exclusive)
+     * @return the text
+     * @throws IOException in case the file can't be read
+     */
+    private static String readText(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+            //read until the buffer is full
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method finds the position of the next line break at or after the given position
+     *
+     * @param channel the file channel
+     * @param position the given position
+     * @return the position of the line break or the size of the file if there is none
+     * @throws IOException in case the file can't be read
+     */
+    private static long findLineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(LINE_SEARCH_WINDOW);
+        long size = channel.size();
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * This method splits the data section into chunks, every chunk starts at the beginning of a line
+     *
+     * @param channel the file channel
+     * @param dataStart start of the data section
+     * @param size size of the file
+     * @return the start positions of all chunks, the last entry is the end of the file
+     * @throws IOException in case the file can't be read
+     */
+    private static long[] splitIntoChunks(FileChannel channel, long dataStart, long size) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, (size - dataStart) / (threads * 4L)));
+        int maxChunks = (int) ((size - dataStart) / chunkSize) + 2;
+
+        long[] starts = new long[maxChunks];
+        int chunks = 0;
+        long position = dataStart;
+        while (position < size) {
+            starts[chunks++] = position;
+            long next = position + chunkSize;
+            position = next >= size ? size : findLineEnd(channel, next) + 1;
+        }
+        starts[chunks] = Math.min(position, size);
+
+        long[] result = new long[chunks + 1];
+        System.arraycopy(starts, 0, result, 0, chunks + 1);
+        return result;
+    }
+
+    /**
+     * This method maps a read-only section of the file
+     *
+     * @param channel the file channel
+     * @param start start of the section
+     * @param end end of the section (exclusive)
+     * @return the mapped section
+     */
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't map file section " + start + "-" + end, e);
+        }
+    }
+
+    /**
+     * This method counts all non-empty lines of a chunk
+     *
+     * @param buffer the chunk
+     * @return the number of non-empty lines
+     */
+    private static long countLines(ByteBuffer buffer) {
+        long lines = 0;
+        boolean lineStart = true;
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                lineStart = true;
+            } else if (lineStart && b != '\r') {
+                lines++;
+                lineStart = false;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * This method parses all node and edge lines of a chunk
+     *
+     * @param buffer the chunk
+     * @param firstLine the global line number of the first line in the chunk
+     * @return the fixed-point bounds (minX, maxX, minY, maxY) of all nodes inside the chunk
+     */
+    private int[] parseChunk(ByteBuffer buffer, long firstLine) {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long line = firstLine;
+        long lastLine = (long) nodeCount + edgeCount;
+        int limit = buffer.limit();
+        int position = 0;
+
+        while (position < limit && line < lastLine) {
+            byte b = buffer.get(position);
+            if (b == '\n' || b == '\r') {
+                position++;
+                continue;
+            }
+
+            if (line < nodeCount) {
+                //node line: id osmId latitude longitude elevation
+                int node = (int) line;
+                position = skipField(buffer, position, limit);
+                position = skipField(buffer, position, limit);
+                position = skipSpaces(buffer, position, limit);
+                int latEnd = fieldEnd(buffer, position, limit);
+                int latitude = parseFixedPoint(buffer, position, latEnd);
+                position = skipSpaces(buffer, latEnd, limit);
+                int lonEnd = fieldEnd(buffer, position, limit);
+                int longitude = parseFixedPoint(buffer, position, lonEnd);
+                position = lonEnd;
+
+                latitudeList[node] = latitude;
+                longitudeList[node] = longitude;
+                bounds[0] = Math.min(bounds[0], longitude);
+                bounds[1] = Math.max(bounds[1], longitude);
+                bounds[2] = Math.min(bounds[2], latitude);
+                bounds[3] = Math.max(bounds[3], latitude);
+            } else {
+                //edge line: source target weight type maxspeed
+                int edge = (int) (line - nodeCount);
+                position = skipSpaces(buffer, position, limit);
+                int srcEnd = fieldEnd(buffer, position, limit);
+                int srcIDX = parseInt(buffer, position, srcEnd);
+                position = skipSpaces(buffer, srcEnd, limit);
+                int trgEnd = fieldEnd(buffer, position, limit);
+                int trgIDX = parseInt(buffer, position, trgEnd);
+                position = skipSpaces(buffer, trgEnd, limit);
+                int weightEnd = fieldEnd(buffer, position, limit);
+                int weight = parseInt(buffer, position, weightEnd);
+                position = weightEnd;
+
+                sourceList[edge] = srcIDX;
+                targetList[edge] = trgIDX;
+                weightList[edge] = weight;
+            }
+
+            //skip the rest of the line
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            line++;
+        }
+        return bounds;
+    }
+
+    /**
+     * This method builds the offsetList from the sorted source indices. Every edge which is the first edge of
+     * its source node fills the offsets of all nodes between the previous source and its own source.
+     */
+    private void buildOffsetList() {
+        IntStream.range(0, edgeCount).parallel().forEach(i -> {
+            int srcIDX = sourceList[i];
+            int previousSrcIDX = i == 0 ? -1 : sourceList[i - 1];
+            if (srcIDX < previousSrcIDX || srcIDX >= nodeCount) {
+                throw new IllegalStateException("Edge " + i + " is not sorted by its source node or has an invalid source");
+            }
+            for (int node = previousSrcIDX + 1; node <= srcIDX; node++) {
+                offsetList[node] = i;
+            }
+        });
+        int lastSrcIDX = edgeCount == 0 ? -1 : sourceList[edgeCount - 1];
+        for (int node = lastSrcIDX + 1; node <= nodeCount; node++) {
+            offsetList[node] = edgeCount;
+        }
+    }
+
+    /**
+     * This method skips a whitespace separated field and the spaces in front of it
+     *
+     * @return the position after the field
+     */
+    private static int skipField(ByteBuffer buffer, int position, int limit) {
+        return fieldEnd(buffer, skipSpaces(buffer, position, limit), limit);
+    }
+
+    /**
+     * @return the position of the first non-space character
+     */
+    private static int skipSpaces(ByteBuffer buffer, int position, int limit) {
+        while (position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @return the position of the first whitespace character after the field
+     */
+    private static int fieldEnd(ByteBuffer buffer, int position, int limit) {
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * This method parses an integer value between start and end
+     *
+     * @return the parsed integer
+     */
+    private static int parseInt(ByteBuffer buffer, int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int position = negative ? start + 1 : start;
+        if (position >= end) {
+            throw new NumberFormatException("Empty number in .fmi file");
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid integer in .fmi file: " + text(buffer, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return Math.toIntExact(negative ? -value : value);
+    }
+
+    /**
+     * This method parses a decimal coordinate between start and end into fixed-point representation.
+     * Values with up to seven decimal places are converted exactly without allocation, everything else
+     * falls back to Double.parseDouble and is rounded to seven decimal places.
+     *
+     * @return the coordinate multiplied by Graph.COORDINATE_SCALE
+     */
+    private static int parseFixedPoint(ByteBuffer buffer, int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int position = negative || (start < end && buffer.get(start) == '+') ? start + 1 : start;
+        long value = 0;
+        boolean hasDigits = false;
+        int fractionDigits = -1;
+
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && fractionDigits < COORDINATE_DECIMALS && value < Integer.MAX_VALUE) {
+                value = value * 10 + (b - '0');
+                hasDigits = true;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                break;
+            }
+        }
+
+        if (position != end || !hasDigits) {
+            double degrees = Double.parseDouble(text(buffer, start, end));
+            return Math.toIntExact(Math.round(degrees * Graph.COORDINATE_SCALE));
+        }
+        for (int i = Math.max(fractionDigits, 0); i < COORDINATE_DECIMALS; i++) {
+            value *= 10;
+        }
+        return Math.toIntExact(negative ? -value : value);
+    }
+
+    /**
+     * @return the bytes between start and end as String
+     */
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int[] getLatitudeList() {
+        return latitudeList;
+    }
+
+    public int[] getLongitudeList() {
+        return longitudeList;
+    }
+
+    public int[] getTargetList() {
+        return targetList;
+    }
+
+    public int[] getWeightList() {
+        return weightList;
+    }
+
+    public int[] getOffsetList() {
+        return offsetList;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+}
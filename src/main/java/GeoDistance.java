@@ -0,0 +1,31 @@
+/**
+ * This class contains distance calculations on the earth's surface.
+ */
+public final class GeoDistance {
+
+    /*
+     * mean radius of the earth in meters
+     */
+    public static final double EARTH_RADIUS = 6_371_000;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * This method calculates the great-circle distance of two coordinates with the haversine formula
+     *
+     * @param lat1 latitude of the first coordinate in degrees
+     * @param lon1 longitude of the first coordinate in degrees
+     * @param lat2 latitude of the second coordinate in degrees
+     * @param lon2 longitude of the second coordinate in degrees
+     * @return the distance in meters
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDeltaLambda = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double h = sinDeltaPhi * sinDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinDeltaLambda * sinDeltaLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
@@ -1,8 +1,11 @@
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.stream.IntStream;
 
 
 /**
@@ -17,46 +20,137 @@ public class Graph {
      */
     private final File file;
     /*
-     * A multidimensional array which stores all edges
+     * Factor between degrees and the fixed-point coordinates of latitudeList and longitudeList
+     * (1e-7 degrees, which is the precision of the .fmi files)
      */
-    private int[][] adjacencyList;
+    static final double COORDINATE_SCALE = 1e7;
     /*
-     * An array which stores the offsets of all nodes
+     * Factor which keeps the calibrated costPerMeter slightly below the measured minimum,
+     * so rounding errors of the distance calculation can't make the A* heuristic overestimate
      */
-    private int[] offsetList;
+    private static final double HEURISTIC_SAFETY_FACTOR = 1 - 1e-6;
+
+    /*
+     * The lists below are IntBuffers: the mapped sections of a snapshot, which are read in place, so several
+     * processes share the page cache of one snapshot file, or heap arrays of a parsed or renumbered graph
+     */
+    /*
+     * A list which stores the offsets of all nodes, the outgoing edges of node i
+     * are the edges offsetList[i] to offsetList[i + 1] - 1
+     */
+    private IntBuffer offsetList;
+    /*
+     * A list which stores the target node of each edge
+     */
+    private IntBuffer targetList;
+    /*
+     * A list which stores the weight of each edge
+     */
+    private IntBuffer weightList;
+    /*
+     * Lists which store the latitude and longitude of each node in fixed-point
+     * representation (see COORDINATE_SCALE)
+     */
+    private IntBuffer latitudeList;
+    private IntBuffer longitudeList;
+    /*
+     * The reverse graph in the same layout: the incoming edges of node i are the edges
+     * reverseOffsetList[i] to reverseOffsetList[i + 1] - 1, reverseSourceList stores their source node
+     */
+    private IntBuffer reverseOffsetList;
+    private IntBuffer reverseSourceList;
+    private IntBuffer reverseWeightList;
+    /*
+     * The smallest ratio of edge weight to great-circle length of the edge, the great-circle
+     * distance multiplied by this value is a lower bound of the path costs (used by A*)
+     */
+    private double costPerMeter;
+    /*
+     * A pool of objects which can use path solving algorithms. Every query borrows its own
+     * PathFinder, so the graph can be queried by several threads at once (see limitSearches).
+     */
+    private volatile PathFinderPool pathFinders;
+    /*
+     * preprocessed data of the ALT algorithm, built or loaded on first use (see getLandmarks)
+     */
+    private volatile Landmarks landmarks;
+    /*
+     * Contraction Hierarchy of the graph, built or loaded on first use (see getContractionHierarchy)
+     */
+    private volatile ContractionHierarchy contractionHierarchy;
+    /*
+     * shortest path trees of frequently queried sources, null if they aren't cached
+     * (see enableShortestPathTreeCache)
+     */
+    private volatile ShortestPathTreeCache shortestPathTrees;
     /*
-     * A multidimensional array which stores the latitude and longitude
-     * of each node
+     * metrics of the searches and of the snapping, null if nothing is recorded
      */
-    private double[][] locationList;
+    private volatile Metrics metrics;
     /*
-     * An object which can use path solving algorithms
+     * hash of the edges of the graph, calculated on first use (see getFingerprint)
      */
-    private final PathFinder pathFinder;
+    private volatile long fingerprint;
 
-    private final double maxX;
-    private final double maxY;
-    private final double minX;
-    private final double minY;
+    private double maxX;
+    private double maxY;
+    private double minX;
+    private double minY;
 
     QuadTree qtree;
 
+    /*
+     * index from the coordinate of a node to its index
+     */
+    private CoordinateIndex coordinateIndex;
+
+    /*
+     * order of the node indices, nodeIds[i] is the id in the graph file of the node with index i and nodeIndices
+     * is the inverse, both are null if the nodes are in the order of the graph file
+     */
+    private final NodeOrder nodeOrder;
+    private int[] nodeIds;
+    private int[] nodeIndices;
 
     /**
-     * Class constructor for the Graph
+     * Class constructor for the Graph, the nodes keep the order of the file
      *
-     * @param file file from the given Website
+     * @param file file from the given Website or a snapshot written by {@link GraphSnapshot}
      * @throws FileNotFoundException in case the file doesn't exist
      */
     public Graph(File file) throws FileNotFoundException {
+        this(file, NodeOrder.INPUT);
+    }
+
+    /**
+     * Class constructor for the Graph, the nodes are renumbered in the given order. All methods work with the
+     * new node indices, getIndexOfNodeId and getIdOfNode convert them from and to the ids of the file.
+     *
+     * @param file      file from the given Website or a snapshot written by {@link GraphSnapshot}
+     * @param nodeOrder order of the node indices
+     * @throws FileNotFoundException in case the file doesn't exist
+     */
+    public Graph(File file, NodeOrder nodeOrder) throws FileNotFoundException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
         this.file = file;
-        this.buildLists();
-        this.pathFinder = new PathFinder(this);
-        this.maxX = getMaxX();
-        this.maxY = getMaxY();
-        this.minX = getMinX();
-        this.minY = getMinY();
-        this.qtree = this.buildQuadTree(3);
+        this.nodeOrder = nodeOrder;
+        if (GraphSnapshot.isSnapshot(file)) {
+            this.loadSnapshot();
+        } else {
+            this.buildLists();
+        }
+        if (nodeOrder != NodeOrder.INPUT) {
+            this.renumberNodes();
+        }
+        if (reverseOffsetList == null) {
+            this.buildReverseLists();
+        }
+        this.calibrateHeuristic();
+        this.pathFinders = new PathFinderPool(this, Runtime.getRuntime().availableProcessors());
+        this.coordinateIndex = new CoordinateIndex(this);
+        this.qtree = this.buildQuadTree(QuadTree.DEFAULT_LEAF_CAPACITY);
 
     }
 
@@ -64,94 +158,180 @@ public class Graph {
      * This Method builds all necessary Data Structures to design the route planer.
      */
     private void buildLists() {
+        FmiParser parser;
         try {
-            Scanner scanner = new Scanner(file);
+            parser = FmiParser.parse(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        latitudeList = IntBuffer.wrap(parser.getLatitudeList());
+        longitudeList = IntBuffer.wrap(parser.getLongitudeList());
+        offsetList = IntBuffer.wrap(parser.getOffsetList());
+        targetList = IntBuffer.wrap(parser.getTargetList());
+        weightList = IntBuffer.wrap(parser.getWeightList());
+
+        //bounds are collected while parsing the nodes
+        this.maxX = parser.getMaxX();
+        this.maxY = parser.getMaxY();
+        this.minX = parser.getMinX();
+        this.minY = parser.getMinY();
+    }
 
-            //Skip first 5 lines
-            for (int i = 0; i < 5; i++) {
-                scanner.nextLine();
-            }
+    /**
+     * This method uses the sections of a memory-mapped graph snapshot as lists instead of parsing the .fmi
+     * text file. Nothing is copied to the heap, the pages are loaded from the page cache on first access.
+     */
+    private void loadSnapshot() {
+        GraphSnapshot snapshot;
+        try {
+            snapshot = GraphSnapshot.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        latitudeList = snapshot.getLatitudes();
+        longitudeList = snapshot.getLongitudes();
+        offsetList = snapshot.getOffsets();
+        targetList = snapshot.getTargets();
+        weightList = snapshot.getWeights();
+        reverseOffsetList = snapshot.getReverseOffsets();
+        reverseSourceList = snapshot.getReverseSources();
+        reverseWeightList = snapshot.getReverseWeights();
+
+        //bounds are stored in the snapshot, no need to scan all nodes again
+        this.maxX = snapshot.getMaxX();
+        this.maxY = snapshot.getMaxY();
+        this.minX = snapshot.getMinX();
+        this.minY = snapshot.getMinY();
+    }
 
-            //Node count and edge count
-            int nodeCount = Integer.parseInt(scanner.nextLine());
-            int edgeCount = Integer.parseInt(scanner.nextLine());
-
-            //Line to split lines into single values
-            String[] currentLine;
-
-            //Edge values
-            int srcIDX;
-            int trgIDX;
-            int weight;
-            int currentNode = 0;
-            int offset = 0;
-
-
-            //Create locationList
-            locationList = new double[nodeCount][2];
-            //Create offsetList + setting first Index to 0
-            offsetList = new int[nodeCount + 1];
-            //Create adjacencecyMatrix
-            adjacencyList = new int[edgeCount][3];
-
-            /*
-             * build locationList
-             */
-            for (int i = 0; i < nodeCount; i++) {
-                currentLine = scanner.nextLine().split(" ");
-                locationList[i][0] = Double.parseDouble(currentLine[2]);
-                locationList[i][1] = Double.parseDouble(currentLine[3]);
+    /**
+     * This method renumbers the nodes in the order of nodeOrder and rewrites the node and edge lists with the
+     * new indices into heap arrays. The outgoing edges of a node keep their order.
+     */
+    private void renumberNodes() {
+        int nodeCount = latitudeList.limit();
+        int[] ids = nodeOrder == NodeOrder.HILBERT
+                ? new QuadTree(this, QuadTree.DEFAULT_LEAF_CAPACITY).getNodesInCurveOrder()
+                : breadthFirstOrder();
+        int[] indices = new int[nodeCount];
+        IntStream.range(0, nodeCount).parallel().forEach(index -> indices[ids[index]] = index);
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int index = 0; index < nodeCount; index++) {
+            offsets[index + 1] = offsets[index] + offsetList.get(ids[index] + 1) - offsetList.get(ids[index]);
+        }
+        int[] latitudes = new int[nodeCount];
+        int[] longitudes = new int[nodeCount];
+        int[] targets = new int[targetList.limit()];
+        int[] weights = new int[weightList.limit()];
+        IntStream.range(0, nodeCount).parallel().forEach(index -> {
+            int id = ids[index];
+            latitudes[index] = latitudeList.get(id);
+            longitudes[index] = longitudeList.get(id);
+            int edge = offsets[index];
+            for (int i = offsetList.get(id); i < offsetList.get(id + 1); i++, edge++) {
+                targets[edge] = indices[targetList.get(i)];
+                weights[edge] = weightList.get(i);
             }
+        });
+
+        latitudeList = IntBuffer.wrap(latitudes);
+        longitudeList = IntBuffer.wrap(longitudes);
+        offsetList = IntBuffer.wrap(offsets);
+        targetList = IntBuffer.wrap(targets);
+        weightList = IntBuffer.wrap(weights);
+        //the reverse graph of a snapshot has the old indices
+        reverseOffsetList = null;
+        reverseSourceList = null;
+        reverseWeightList = null;
+        nodeIds = ids;
+        nodeIndices = indices;
+    }
 
-            /*
-             * build offsetList & adjacencyMatrix
-             */
-            for (int i = 0; i < edgeCount; i++) {
-                //Split lines into values
-                currentLine = scanner.nextLine().split(" ");
-                srcIDX = Integer.parseInt(currentLine[0]);
-                trgIDX = Integer.parseInt(currentLine[1]);
-                weight = Integer.parseInt(currentLine[2]);
-
-                //source
-                adjacencyList[i][0] = srcIDX;
-                //target
-                adjacencyList[i][1] = trgIDX;
-                //cost of the edge
-                adjacencyList[i][2] = weight;
-
-
-                //Update Offset to all other Nodes
-                offsetList[0] = 0;
-                if (currentNode != srcIDX) {
-                    for (int j = currentNode; j < srcIDX; j++) {
-                        offsetList[j + 1] = offset;
+    /**
+     * This method returns the nodes in the order in which a breadth-first search on the outgoing edges reaches
+     * them. Nodes which aren't reachable yet start a new search, in the order of the file.
+     *
+     * @return the nodes in breadth-first order
+     */
+    private int[] breadthFirstOrder() {
+        int nodeCount = latitudeList.limit();
+        //the queue of the search contains every node exactly once, so it's the order itself
+        int[] queue = new int[nodeCount];
+        boolean[] reached = new boolean[nodeCount];
+        int tail = 0;
+        for (int start = 0; start < nodeCount; start++) {
+            if (reached[start]) {
+                continue;
+            }
+            reached[start] = true;
+            int head = tail;
+            queue[tail++] = start;
+            while (head < tail) {
+                int node = queue[head++];
+                for (int i = offsetList.get(node); i < offsetList.get(node + 1); i++) {
+                    if (!reached[targetList.get(i)]) {
+                        reached[targetList.get(i)] = true;
+                        queue[tail++] = targetList.get(i);
                     }
-                    currentNode = srcIDX;
                 }
-
-                //Set offset changes
-                offset++;
-                offsetList[srcIDX + 1] = offset;
             }
+        }
+        return queue;
+    }
 
-            scanner.close();
-
-
-        } catch (FileNotFoundException e) {
+    /**
+     * This method builds the reverse graph with a counting sort of all edges by their target node. A snapshot
+     * stores the reverse graph, so it is only built for a parsed or renumbered graph.
+     */
+    private void buildReverseLists() {
+        int nodeCount = latitudeList.limit();
+        int edgeCount = targetList.limit();
+        int[] reverseOffsets = new int[nodeCount + 1];
+        int[] reverseSources = new int[edgeCount];
+        int[] reverseWeights = new int[edgeCount];
+
+        //count incoming edges, shifted by one so the prefix sum yields the offsets
+        for (int i = 0; i < edgeCount; i++) {
+            reverseOffsets[targetList.get(i) + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            reverseOffsets[node + 1] += reverseOffsets[node];
+        }
 
-            e.printStackTrace();
+        int[] nextEdge = new int[nodeCount];
+        System.arraycopy(reverseOffsets, 0, nextEdge, 0, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int i = offsetList.get(node); i < offsetList.get(node + 1); i++) {
+                int reverseEdge = nextEdge[targetList.get(i)]++;
+                reverseSources[reverseEdge] = node;
+                reverseWeights[reverseEdge] = weightList.get(i);
+            }
         }
+        reverseOffsetList = IntBuffer.wrap(reverseOffsets);
+        reverseSourceList = IntBuffer.wrap(reverseSources);
+        reverseWeightList = IntBuffer.wrap(reverseWeights);
     }
 
     /**
-     * This method returns the source index of the given Edge
-     *
-     * @param edgeIDX edge index
-     * @return source index of edgeIDX
+     * This method calculates costPerMeter, the smallest ratio of weight to great-circle length of all edges.
+     * Edges between nodes with identical coordinates are ignored.
      */
-    public int getSrcIDXofEdge(int edgeIDX) {
-        return adjacencyList[edgeIDX][0];
+    private void calibrateHeuristic() {
+        double minCostPerMeter = IntStream.range(0, latitudeList.limit()).parallel().mapToDouble(node -> {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = offsetList.get(node); i < offsetList.get(node + 1); i++) {
+                int trgIDX = targetList.get(i);
+                double meters = GeoDistance.haversine(getLatitudeOfNode(node), getLongitudeOfNode(node),
+                        getLatitudeOfNode(trgIDX), getLongitudeOfNode(trgIDX));
+                if (meters > 0) {
+                    min = Math.min(min, weightList.get(i) / meters);
+                }
+            }
+            return min;
+        }).min().orElse(0);
+
+        this.costPerMeter = Double.isInfinite(minCostPerMeter) ? 0 : minCostPerMeter * HEURISTIC_SAFETY_FACTOR;
     }
 
     /**
@@ -160,8 +340,8 @@ public class Graph {
      * @param edgeIDX edge index
      * @return target index of edgeIDX
      */
-    public Integer getTrgIDXofEdge(int edgeIDX) {
-        return adjacencyList[edgeIDX][1];
+    public int getTrgIDXofEdge(int edgeIDX) {
+        return targetList.get(edgeIDX);
     }
 
     /**
@@ -170,8 +350,8 @@ public class Graph {
      * @param edgeIDX edge index
      * @return weight of edgeIDX
      */
-    public Integer getWeightOfEdge(int edgeIDX) {
-        return adjacencyList[edgeIDX][2];
+    public int getWeightOfEdge(int edgeIDX) {
+        return weightList.get(edgeIDX);
     }
 
     /**
@@ -180,8 +360,48 @@ public class Graph {
      * @param nodeIDX node Index
      * @return offset of the given node
      */
-    public Integer getOffsetOfNode(int nodeIDX) {
-        return offsetList[nodeIDX];
+    public int getOffsetOfNode(int nodeIDX) {
+        return offsetList.get(nodeIDX);
+    }
+
+    /**
+     * This method returns the offset of the requested node index in the reverse graph
+     *
+     * @param nodeIDX node Index
+     * @return index of the first incoming edge of the given node
+     */
+    public int getReverseOffsetOfNode(int nodeIDX) {
+        return reverseOffsetList.get(nodeIDX);
+    }
+
+    /**
+     * This method returns the source index of the given edge of the reverse graph
+     *
+     * @param reverseEdgeIDX edge index in the reverse graph
+     * @return source index of the edge
+     */
+    public int getSrcIDXofReverseEdge(int reverseEdgeIDX) {
+        return reverseSourceList.get(reverseEdgeIDX);
+    }
+
+    /**
+     * This method returns the weight of the given edge of the reverse graph
+     *
+     * @param reverseEdgeIDX edge index in the reverse graph
+     * @return weight of the edge
+     */
+    public int getWeightOfReverseEdge(int reverseEdgeIDX) {
+        return reverseWeightList.get(reverseEdgeIDX);
+    }
+
+    /**
+     * This method returns the smallest cost per meter of all edges. The great-circle distance between two nodes
+     * multiplied by this value is never larger than the value of the shortest path between them.
+     *
+     * @return the smallest cost per meter
+     */
+    public double getCostPerMeter() {
+        return costPerMeter;
     }
 
     /**
@@ -190,8 +410,8 @@ public class Graph {
      * @param nodeIDX
      * @return a double value which represents the latitude
      */
-    public Double getLatitudeOfNode(int nodeIDX) {
-        return locationList[nodeIDX][0];
+    public double getLatitudeOfNode(int nodeIDX) {
+        return latitudeList.get(nodeIDX) / COORDINATE_SCALE;
     }
 
     /**
@@ -200,8 +420,28 @@ public class Graph {
      * @param nodeIDX
      * @return a double value which represents the longitude
      */
-    public Double getLongitudeOfNode(int nodeIDX) {
-        return locationList[nodeIDX][1];
+    public double getLongitudeOfNode(int nodeIDX) {
+        return longitudeList.get(nodeIDX) / COORDINATE_SCALE;
+    }
+
+    /**
+     * This method returns the latitude of the node in fixed-point representation
+     *
+     * @param nodeIDX
+     * @return the latitude multiplied by COORDINATE_SCALE
+     */
+    public int getFixedLatitudeOfNode(int nodeIDX) {
+        return latitudeList.get(nodeIDX);
+    }
+
+    /**
+     * This method returns the longitude of the node in fixed-point representation
+     *
+     * @param nodeIDX
+     * @return the longitude multiplied by COORDINATE_SCALE
+     */
+    public int getFixedLongitudeOfNode(int nodeIDX) {
+        return longitudeList.get(nodeIDX);
     }
 
     /**
@@ -210,7 +450,100 @@ public class Graph {
      * @return number of nodes
      */
     public int getNumberOfNodes() {
-        return locationList.length;
+        return latitudeList.limit();
+    }
+
+    /**
+     * This method returns the order of the node indices
+     *
+     * @return the node order
+     */
+    public NodeOrder getNodeOrder() {
+        return nodeOrder;
+    }
+
+    /**
+     * This method returns the index of the node with the given id of the graph file
+     *
+     * @param nodeId id of the node in the graph file (e.g. in .que files)
+     * @return the node index
+     */
+    public int getIndexOfNodeId(int nodeId) {
+        return nodeIndices == null ? nodeId : nodeIndices[nodeId];
+    }
+
+    /**
+     * This method returns the id of the node in the graph file
+     *
+     * @param nodeIDX node index
+     * @return the id of the node in the graph file
+     */
+    public int getIdOfNode(int nodeIDX) {
+        return nodeIds == null ? nodeIDX : nodeIds[nodeIDX];
+    }
+
+    /**
+     * This method returns the number of edges
+     *
+     * @return number of edges
+     */
+    public int getNumberOfEdges() {
+        return targetList.limit();
+    }
+
+    /**
+     * This method caches the shortest path trees of frequently queried sources, queries from these sources
+     * (findRouteAtoB, findRouteAtoAll and getPath) are answered without search. A budget of 0 disables the cache.
+     *
+     * @param memoryBudget maximum memory of all trees in bytes
+     * @param offHeap      true if the trees are stored off-heap
+     */
+    public void enableShortestPathTreeCache(long memoryBudget, boolean offHeap) {
+        this.shortestPathTrees = memoryBudget == 0 ? null : new ShortestPathTreeCache(this, memoryBudget, offHeap);
+    }
+
+    /**
+     * This method returns the cache of shortest path trees
+     *
+     * @return the cache or null if it's disabled
+     */
+    public ShortestPathTreeCache getShortestPathTreeCache() {
+        return shortestPathTrees;
+    }
+
+    /**
+     * This method sets the number of searches which run at once, one per processor by default. Every search
+     * needs a PathFinder with several arrays of one entry per node, further queries wait for a search to finish.
+     * It has to be called before the graph is queried.
+     *
+     * @param maxSearches maximum number of searches at once
+     */
+    public void limitSearches(int maxSearches) {
+        this.pathFinders = new PathFinderPool(this, maxSearches);
+    }
+
+    /**
+     * This method records the effort of every search (see PathFinder.recordSearch) and the time of snapping
+     * coordinates to nodes in the metrics
+     *
+     * @param metrics the metrics or null to record nothing
+     */
+    public void enableMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * This method returns the metrics of the searches and of the snapping
+     *
+     * @return the metrics or null if nothing is recorded
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private ShortestPathTree shortestPathTree(int source) {
+        ShortestPathTreeCache cache = shortestPathTrees;
+        return cache == null ? null : cache.get(source);
     }
 
     /**
@@ -222,7 +555,31 @@ public class Graph {
      * @return the value of the shortest path
      */
     public int findRouteAtoB(int startingPoint, int endPoint) {
-        return pathFinder.oneToOneDijkstra(startingPoint, endPoint);
+        return findRouteAtoB(startingPoint, endPoint, RoutingAlgorithm.DIJKSTRA);
+    }
+
+    /**
+     * This method returns the value of the shortest path from the starting point
+     * to the end point using the given algorithm or the cached shortest path tree of the starting point.
+     *
+     * @param startingPoint the source node
+     * @param endPoint      the targetNode
+     * @param algorithm     the algorithm which solves the query
+     * @return the value of the shortest path
+     */
+    public int findRouteAtoB(int startingPoint, int endPoint, RoutingAlgorithm algorithm) {
+        ShortestPathTree tree = shortestPathTree(startingPoint);
+        if (tree != null) {
+            return tree.getDistance(endPoint);
+        }
+        //the preprocessing is built before a PathFinder is borrowed, so it doesn't compete with the query for memory
+        prepare(algorithm);
+        PathFinder pathFinder = pathFinders.acquire();
+        try {
+            return pathFinder.oneToOne(startingPoint, endPoint, algorithm);
+        } finally {
+            pathFinders.release(pathFinder);
+        }
     }
 
     /**
@@ -232,7 +589,16 @@ public class Graph {
      * @return int
      */
     public int[] findRouteAtoAll(int startingPoint) {
-        return pathFinder.oneToAllDijkstra(startingPoint);
+        ShortestPathTree tree = shortestPathTree(startingPoint);
+        if (tree != null) {
+            return tree.getDistances();
+        }
+        PathFinder pathFinder = pathFinders.acquire();
+        try {
+            return pathFinder.oneToAllDijkstra(startingPoint);
+        } finally {
+            pathFinders.release(pathFinder);
+        }
     }
 
     /**
@@ -244,136 +610,358 @@ public class Graph {
      * @return
      */
     public List<String> getPathCoords(int startingPoint, int endPoint){
-    	return pathFinder.pathFromAToBCoords(startingPoint, endPoint);
+        return getPathCoords(startingPoint, endPoint, RoutingAlgorithm.DIJKSTRA);
     }
 
     /**
-     * This method returns an rectangle-shaped area, where all nodes
-     * with their given coordinates could fit in
+     * this method returns a list of coordinates in a specific order which represents the
+     * path from the startingPoint to the endPoint, the path is calculated with the given algorithm.
      *
-     * @return an rectangle-shaped area
+     * @param startingPoint
+     * @param endPoint
+     * @param algorithm the algorithm which solves the query
+     * @return
      */
-    public Rectangle getBoundary() {
-
-        double width = maxX - minX;
-        double height = maxY - minY;
-        final double dim = Math.max(width, height);
-
-        return new Rectangle(new Point((minX + (dim / 2)), (minY + (dim / 2))), dim / 2);
+    public List<String> getPathCoords(int startingPoint, int endPoint, RoutingAlgorithm algorithm){
+        prepare(algorithm);
+        PathFinder pathFinder = pathFinders.acquire();
+        try {
+            return pathFinder.pathFromAToBCoords(startingPoint, endPoint, algorithm);
+        } finally {
+            pathFinders.release(pathFinder);
+        }
     }
 
-
     /**
-     * This method builds a new QuadTree data structure using the locationList array
+     * This method returns the nodes of the shortest path from the starting point to the end point, the path is
+     * calculated with the given algorithm.
      *
-     * @param capacity the maximum amount of points (or nodes) that could fit in a
-     *                 QuadTree leaf
-     * @return the new QuadTree
+     * @param startingPoint the source node
+     * @param endPoint      the target node
+     * @param algorithm     the algorithm which solves the query
+     * @return the node indices of the path (end point first, starting point last), empty if there is no path
      */
-    public QuadTree buildQuadTree(int capacity) {
-        this.qtree = new QuadTree(this, capacity, this.getBoundary(), new LinkedList<>());
-        for (int i = 0; i < locationList.length; i++) {
-            qtree.insert(new Point(this.getLongitudeOfNode(i), this.getLatitudeOfNode(i)));
+    public int[] getPath(int startingPoint, int endPoint, RoutingAlgorithm algorithm) {
+        ShortestPathTree tree = shortestPathTree(startingPoint);
+        if (tree != null) {
+            return tree.getPath(endPoint);
+        }
+        prepare(algorithm);
+        PathFinder pathFinder = pathFinders.acquire();
+        try {
+            return pathFinder.pathFromAToB(startingPoint, endPoint, algorithm);
+        } finally {
+            pathFinders.release(pathFinder);
         }
-        return qtree;
     }
 
     /**
-     * This method calculates the nearest node from the given longitude and latitude.
+     * This method calculates the distances from all sources to all targets with the Contraction Hierarchy.
+     * Every search runs only once: the upward searches from the targets store their distances in buckets at the
+     * visited nodes, then the upward search from each source combines its distances with the buckets of the
+     * nodes it visits. The searches of the targets and of the sources run in parallel.
      *
-     * @param lon Longitude
-     * @param lat Latitude
-     * @return a Point with the
-     * @throws IllegalStateException
+     * @param sources indices of the source nodes
+     * @param targets indices of the target nodes
+     * @return matrix[i][j] is the distance from sources[i] to targets[j] or Integer.MAX_VALUE if there is no path
      */
-    public double[] getClosestDistance(double lon, double lat) throws IllegalStateException {
-        double[] coords = {0.0, 0.0};
-
-        if (this.qtree == null) {
-            throw new IllegalStateException("Quadtree is not built.");
+    public int[][] distanceMatrix(int[] sources, int[] targets) {
+        getContractionHierarchy();
+        int[][] targetSpaces = new int[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            PathFinder pathFinder = pathFinders.acquire();
+            try {
+                targetSpaces[j] = pathFinder.upwardSearchSpace(targets[j], true);
+            } finally {
+                pathFinders.release(pathFinder);
+            }
+        });
+
+        //buckets sorted by node: bucketNodes[k] was visited by the search of target bucketTargets[k]
+        int bucketCount = Arrays.stream(targetSpaces).mapToInt(space -> space.length / 2).sum();
+        long[] entries = new long[bucketCount];
+        int[] entryDistances = new int[bucketCount];
+        int[] entryTargets = new int[bucketCount];
+        int entry = 0;
+        for (int j = 0; j < targets.length; j++) {
+            for (int k = 0; k < targetSpaces[j].length; k += 2) {
+                entries[entry] = ((long) targetSpaces[j][k] << 32) | entry;
+                entryTargets[entry] = j;
+                entryDistances[entry] = targetSpaces[j][k + 1];
+                entry++;
+            }
+        }
+        Arrays.parallelSort(entries);
+        int[] bucketNodes = new int[bucketCount];
+        int[] bucketTargets = new int[bucketCount];
+        int[] bucketDistances = new int[bucketCount];
+        for (int k = 0; k < bucketCount; k++) {
+            int index = (int) entries[k];
+            bucketNodes[k] = (int) (entries[k] >>> 32);
+            bucketTargets[k] = entryTargets[index];
+            bucketDistances[k] = entryDistances[index];
         }
-        Point closestPoint = qtree.getNearest(new Point(lon, lat));
-        coords[1] = closestPoint.getYval();
-        coords[0] = closestPoint.getXval();
 
-        return coords;
+        int[][] matrix = new int[sources.length][];
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            int[] space;
+            PathFinder pathFinder = pathFinders.acquire();
+            try {
+                space = pathFinder.upwardSearchSpace(sources[i], false);
+            } finally {
+                pathFinders.release(pathFinder);
+            }
+            int[] row = new int[targets.length];
+            Arrays.fill(row, Integer.MAX_VALUE);
+            for (int k = 0; k < space.length; k += 2) {
+                int node = space[k];
+                for (int b = firstBucket(bucketNodes, node); b < bucketCount && bucketNodes[b] == node; b++) {
+                    long distance = (long) space[k + 1] + bucketDistances[b];
+                    if (distance < row[bucketTargets[b]]) {
+                        row[bucketTargets[b]] = (int) distance;
+                    }
+                }
+            }
+            matrix[i] = row;
+        });
+        return matrix;
     }
 
     /**
-     * This method calculates the x value most right point
+     * This method returns the index of the first bucket of the node (binary search)
      *
-     * @return the x value of the most right point
+     * @param bucketNodes the sorted nodes of all buckets
+     * @param node        node index
+     * @return index of the first bucket of the node or of the first bucket of a larger node
      */
-    private double getMaxX() {
-
-        double maxX = Double.MIN_VALUE;
-
-        for (int i = 0; i < locationList.length; i++) {
-            if (maxX < this.getLongitudeOfNode(i)) {
-                maxX = this.getLongitudeOfNode(i);
+    private static int firstBucket(int[] bucketNodes, int node) {
+        int low = 0;
+        int high = bucketNodes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bucketNodes[middle] < node) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
         }
-
-        return maxX;
-
+        return low;
     }
 
     /**
-     * This method calculates the x value most left point
+     * This method returns the pool of PathFinders of this graph, e.g. for workers which
+     * want to keep one PathFinder for many queries.
      *
-     * @return @return the x value of the most left point
+     * @return the PathFinder pool
      */
-    private double getMinX() {
+    public PathFinderPool getPathFinderPool() {
+        return pathFinders;
+    }
 
-        double minX = Double.MAX_VALUE;
+    /**
+     * This method returns a hash of the node count and all edges. Files with preprocessed data store it,
+     * so they aren't used for another graph.
+     *
+     * @return the fingerprint of the graph
+     */
+    public long getFingerprint() {
+        long hash = fingerprint;
+        if (hash == 0) {
+            hash = getNumberOfNodes() * 0x9E3779B97F4A7C15L + getNumberOfEdges();
+            for (int i = 0; i < offsetList.limit(); i++) {
+                hash = hash * 31 + offsetList.get(i);
+            }
+            for (int i = 0; i < targetList.limit(); i++) {
+                hash = (hash * 31 + targetList.get(i)) * 31 + weightList.get(i);
+            }
+            //0 marks a fingerprint which isn't calculated yet
+            hash = hash == 0 ? 1 : hash;
+            fingerprint = hash;
+        }
+        return hash;
+    }
 
-        for (int i = 0; i < locationList.length; i++) {
-            if (minX > this.getLongitudeOfNode(i)) {
-                minX = this.getLongitudeOfNode(i);
+    /**
+     * This method returns the landmarks of the ALT algorithm. They are loaded from the file next to the graph
+     * file (see preprocessedFile) or built and saved there if the file doesn't exist or is outdated.
+     *
+     * @return the landmarks of the graph
+     */
+    public Landmarks getLandmarks() {
+        //double-checked, so queries don't synchronize once the data is available
+        if (landmarks == null) {
+            synchronized (this) {
+                if (landmarks == null) {
+                    File landmarkFile = preprocessedFile(".landmarks");
+                    try {
+                        landmarks = Landmarks.load(landmarkFile, this);
+                    } catch (IOException e) {
+                        System.out.println("couldn't read " + landmarkFile + ": " + e.getMessage());
+                    }
+                    if (landmarks == null) {
+                        landmarks = Landmarks.build(this, Landmarks.DEFAULT_COUNT);
+                        try {
+                            landmarks.save(landmarkFile, getFingerprint());
+                        } catch (IOException e) {
+                            System.out.println("couldn't write " + landmarkFile + ": " + e.getMessage());
+                        }
+                    }
+                }
             }
         }
+        return landmarks;
+    }
 
-        return minX;
+    /**
+     * This method returns the Contraction Hierarchy of the graph. It's loaded from the file next to the graph
+     * file (see preprocessedFile) or built and saved there if the file doesn't exist or is outdated.
+     *
+     * @return the Contraction Hierarchy of the graph
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        //double-checked, so queries don't synchronize once the data is available
+        if (contractionHierarchy == null) {
+            synchronized (this) {
+                if (contractionHierarchy == null) {
+                    File hierarchyFile = preprocessedFile(".ch");
+                    try {
+                        contractionHierarchy = ContractionHierarchy.load(hierarchyFile, this);
+                    } catch (IOException e) {
+                        System.out.println("couldn't read " + hierarchyFile + ": " + e.getMessage());
+                    }
+                    if (contractionHierarchy == null) {
+                        contractionHierarchy = ContractionHierarchy.build(this);
+                        try {
+                            contractionHierarchy.save(hierarchyFile, getFingerprint());
+                        } catch (IOException e) {
+                            System.out.println("couldn't write " + hierarchyFile + ": " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+        return contractionHierarchy;
+    }
 
+    /**
+     * This method returns the file of preprocessed data next to the graph file: graph file name + extension, or
+     * graph file name + "." + name of the node order + extension if the nodes are renumbered, because the data
+     * refers to node indices
+     *
+     * @param extension extension of the file, e.g. ".ch"
+     * @return the file
+     */
+    private File preprocessedFile(String extension) {
+        String order = nodeOrder == NodeOrder.INPUT ? "" : "." + nodeOrder.getName();
+        return new File(file.getPath() + order + extension);
     }
 
     /**
-     * This method calculates the y value highest point
+     * This method builds or loads the preprocessed data the algorithm needs, so the first query
+     * doesn't have to wait for it
      *
-     * @return the y value of the highest point
+     * @param algorithm the algorithm
      */
-    private double getMaxY() {
+    public void prepare(RoutingAlgorithm algorithm) {
+        if (algorithm == RoutingAlgorithm.ALT) {
+            getLandmarks();
+        } else if (algorithm == RoutingAlgorithm.CONTRACTION_HIERARCHY) {
+            getContractionHierarchy();
+        }
+    }
 
-        double maxY = Double.MIN_VALUE;
+    /**
+     * This method returns an rectangle-shaped area, where all nodes
+     * with their given coordinates could fit in
+     *
+     * @return an rectangle-shaped area
+     */
+    public Rectangle getBoundary() {
 
-        for (int i = 0; i < locationList.length; i++) {
-            if (maxY < this.getLatitudeOfNode(i)) {
-                maxY = this.getLatitudeOfNode(i);
-            }
-        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        final double dim = Math.max(width, height);
 
-        return maxY;
+        return new Rectangle(new Point((minX + (dim / 2)), (minY + (dim / 2))), dim / 2);
     }
 
+
     /**
-     * This method calculates the y value lowest point
+     * This method builds a new QuadTree data structure using the latitudeList and longitudeList arrays
      *
-     * @return the y value of the lowest point
+     * @param capacity the maximum amount of points (or nodes) that could fit in a
+     *                 QuadTree leaf
+     * @return the new QuadTree
      */
-    private double getMinY() {
+    public QuadTree buildQuadTree(int capacity) {
+        this.qtree = new QuadTree(this, capacity);
+        return qtree;
+    }
 
-        double minY = Double.MAX_VALUE;
+    /**
+     * This method calculates the nearest node from the given longitude and latitude.
+     *
+     * @param lon Longitude
+     * @param lat Latitude
+     * @return the coordinate (longitude, latitude) of the closest node
+     * @throws IllegalStateException if the QuadTree isn't built
+     */
+    public double[] getClosestDistance(double lon, double lat) throws IllegalStateException {
+        int nodeIDX = getClosestNode(lon, lat);
+        return new double[]{this.getLongitudeOfNode(nodeIDX), this.getLatitudeOfNode(nodeIDX)};
+    }
 
-        for (int i = 0; i < locationList.length; i++) {
-            if (minY > this.getLatitudeOfNode(i)) {
-                minY = this.getLatitudeOfNode(i);
-            }
+    /**
+     * This method returns the index of the node which is closest to the coordinate
+     *
+     * @param lon longitude
+     * @param lat latitude
+     * @return the node id of the closest node
+     * @throws IllegalStateException if the QuadTree isn't built
+     */
+    public int getClosestNode(double lon, double lat) throws IllegalStateException {
+        if (this.qtree == null) {
+            throw new IllegalStateException("Quadtree is not built.");
+        }
+        long start = System.nanoTime();
+        int nodeIDX = qtree.getNearest(lon, lat);
+        recordSnap(start, 1);
+        if (nodeIDX < 0) {
+            throw new IllegalStateException("the graph has no nodes");
         }
+        return nodeIDX;
+    }
 
-        return minY;
+    /**
+     * This method returns the indices of the nodes which are closest to many coordinates at once
+     * (see QuadTree.getNearest(double[], double[]))
+     *
+     * @param lons longitudes
+     * @param lats latitudes, same length as lons
+     * @return the node id of the closest node of each coordinate
+     * @throws IllegalStateException    if the QuadTree isn't built
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public int[] getClosestNodes(double[] lons, double[] lats) throws IllegalStateException {
+        if (this.qtree == null) {
+            throw new IllegalStateException("Quadtree is not built.");
+        }
+        if (lons.length > 0 && this.getNumberOfNodes() == 0) {
+            throw new IllegalStateException("the graph has no nodes");
+        }
+        long start = System.nanoTime();
+        int[] nodes = qtree.getNearest(lons, lats);
+        recordSnap(start, lons.length);
+        return nodes;
+    }
 
+    private void recordSnap(long start, int coordinates) {
+        Metrics recorder = metrics;
+        if (recorder != null) {
+            recorder.recordSnap(System.nanoTime() - start, coordinates);
+        }
     }
-    
+
     /**
      * This method returns the index of the node by giving a specific coordinate.
      * 
@@ -381,15 +969,13 @@ public class Graph {
      * @return the node id of the coordinate
      * @throws RuntimeException if coordinate doesn't represent any node from the graph
      */
-    public int getIndexOfNode(double[] lonlat){
-        //TODO: get index of coordinates
-        for (int i = 0; i < locationList.length; i++) {
-            if (lonlat[0] == this.getLongitudeOfNode(i) && lonlat[1] == this.getLatitudeOfNode(i)){
-                System.out.println("ID: "+i);
-                return i;
-            }
+    public int getIndexOfNode(double[] lonlat) {
+        int nodeIDX = coordinateIndex.get((int) Math.round(lonlat[1] * COORDINATE_SCALE),
+                (int) Math.round(lonlat[0] * COORDINATE_SCALE));
+        if (nodeIDX < 0) {
+            throw new RuntimeException("no node at " + lonlat[1] + "," + lonlat[0]);
         }
-        throw new RuntimeException();
+        return nodeIDX;
     }
 
 }
\ No newline at end of file
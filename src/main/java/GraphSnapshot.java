@@ -0,0 +1,347 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class represents a binary snapshot of a graph. A snapshot is written once from a parsed
+ * .fmi file and afterwards memory-mapped on every start, so the text file doesn't have to be parsed again.
+ * The Graph reads the mapped sections in place, so processes on the same host share one copy in the page cache.
+ * <p>
+ * Layout (little endian):
+ * header (magic, version, node count, edge count, minX, maxX, minY, maxY),
+ * latitudes (int[nodeCount]), longitudes (int[nodeCount]), offsets (int[nodeCount + 1]),
+ * targets (int[edgeCount]), weights (int[edgeCount]),
+ * reverse offsets (int[nodeCount + 1]), reverse sources (int[edgeCount]), reverse weights (int[edgeCount])
+ * <p>
+ * Coordinates are stored in the fixed-point representation of the Graph (see Graph.COORDINATE_SCALE).
+ */
+public class GraphSnapshot {
+
+    /*
+     * "FMI1" in little endian, marks a file as graph snapshot
+     */
+    private static final int MAGIC = 0x31494D46;
+    /*
+     * version of the layout, has to be increased whenever the layout changes
+     */
+    private static final int VERSION = 3;
+    /*
+     * size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 48;
+    /*
+     * size of the buffer which is used to write the sections
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+
+    /*
+     * the mapped sections of the snapshot
+     */
+    private final IntBuffer latitudes;
+    private final IntBuffer longitudes;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer reverseOffsets;
+    private final IntBuffer reverseSources;
+    private final IntBuffer reverseWeights;
+
+    /**
+     * Class constructor, maps all sections of the given snapshot file
+     *
+     * @param file snapshot file
+     * @throws IOException in case the file can't be read or isn't a valid snapshot
+     */
+    private GraphSnapshot(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a graph snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            this.nodeCount = header.getInt();
+            this.edgeCount = header.getInt();
+            this.minX = header.getDouble();
+            this.maxX = header.getDouble();
+            this.minY = header.getDouble();
+            this.maxY = header.getDouble();
+
+            long expectedSize = HEADER_SIZE + 8L * nodeCount + 8L * (nodeCount + 1) + 16L * edgeCount;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Snapshot " + file + " is truncated or corrupt");
+            }
+
+            //every section gets its own mapping, so no mapping is larger than 2GB
+            long position = HEADER_SIZE;
+            this.latitudes = map(channel, position, 4L * nodeCount).asIntBuffer();
+            position += 4L * nodeCount;
+            this.longitudes = map(channel, position, 4L * nodeCount).asIntBuffer();
+            position += 4L * nodeCount;
+            this.offsets = map(channel, position, 4L * (nodeCount + 1)).asIntBuffer();
+            position += 4L * (nodeCount + 1);
+            this.targets = map(channel, position, 4L * edgeCount).asIntBuffer();
+            position += 4L * edgeCount;
+            this.weights = map(channel, position, 4L * edgeCount).asIntBuffer();
+            position += 4L * edgeCount;
+            this.reverseOffsets = map(channel, position, 4L * (nodeCount + 1)).asIntBuffer();
+            position += 4L * (nodeCount + 1);
+            this.reverseSources = map(channel, position, 4L * edgeCount).asIntBuffer();
+            position += 4L * edgeCount;
+            this.reverseWeights = map(channel, position, 4L * edgeCount).asIntBuffer();
+        }
+    }
+
+    /**
+     * This method maps the given snapshot file
+     *
+     * @param file snapshot file
+     * @return the mapped snapshot
+     * @throws IOException in case the file can't be read or isn't a valid snapshot
+     */
+    public static GraphSnapshot open(File file) throws IOException {
+        return new GraphSnapshot(file);
+    }
+
+    /**
+     * This method checks if the given file starts with the snapshot magic number
+     *
+     * @param file the given file
+     * @return true if the file is a graph snapshot, false otherwise (also if the file doesn't exist)
+     */
+    public static boolean isSnapshot(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return Integer.reverseBytes(raf.readInt()) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method writes the given graph as snapshot into the given file. The nodes are written in the order of
+     * the graph file, so the snapshot has the same node ids even if the graph is renumbered.
+     *
+     * @param graph the graph
+     * @param file  the target file
+     * @throws IOException in case the file can't be written
+     */
+    public static void write(Graph graph, File file) throws IOException {
+        int nodeCount = graph.getNumberOfNodes();
+        int edgeCount = graph.getNumberOfEdges();
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodeCount; i++) {
+            minX = Math.min(minX, graph.getLongitudeOfNode(i));
+            maxX = Math.max(maxX, graph.getLongitudeOfNode(i));
+            minY = Math.min(minY, graph.getLatitudeOfNode(i));
+            maxY = Math.max(maxY, graph.getLatitudeOfNode(i));
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount);
+            buffer.putDouble(minX).putDouble(maxX).putDouble(minY).putDouble(maxY);
+
+            for (int id = 0; id < nodeCount; id++) {
+                flushIfFull(buffer, channel, 4);
+                buffer.putInt(graph.getFixedLatitudeOfNode(graph.getIndexOfNodeId(id)));
+            }
+            for (int id = 0; id < nodeCount; id++) {
+                flushIfFull(buffer, channel, 4);
+                buffer.putInt(graph.getFixedLongitudeOfNode(graph.getIndexOfNodeId(id)));
+            }
+            int offset = 0;
+            for (int id = 0; id < nodeCount; id++) {
+                flushIfFull(buffer, channel, 4);
+                buffer.putInt(offset);
+                int node = graph.getIndexOfNodeId(id);
+                offset += graph.getOffsetOfNode(node + 1) - graph.getOffsetOfNode(node);
+            }
+            flushIfFull(buffer, channel, 4);
+            buffer.putInt(offset);
+            for (int id = 0; id < nodeCount; id++) {
+                int node = graph.getIndexOfNodeId(id);
+                for (int i = graph.getOffsetOfNode(node); i < graph.getOffsetOfNode(node + 1); i++) {
+                    flushIfFull(buffer, channel, 4);
+                    buffer.putInt(graph.getIdOfNode(graph.getTrgIDXofEdge(i)));
+                }
+            }
+            for (int id = 0; id < nodeCount; id++) {
+                int node = graph.getIndexOfNodeId(id);
+                for (int i = graph.getOffsetOfNode(node); i < graph.getOffsetOfNode(node + 1); i++) {
+                    flushIfFull(buffer, channel, 4);
+                    buffer.putInt(graph.getWeightOfEdge(i));
+                }
+            }
+            offset = 0;
+            for (int id = 0; id < nodeCount; id++) {
+                flushIfFull(buffer, channel, 4);
+                buffer.putInt(offset);
+                int node = graph.getIndexOfNodeId(id);
+                offset += graph.getReverseOffsetOfNode(node + 1) - graph.getReverseOffsetOfNode(node);
+            }
+            flushIfFull(buffer, channel, 4);
+            buffer.putInt(offset);
+            for (int id = 0; id < nodeCount; id++) {
+                int node = graph.getIndexOfNodeId(id);
+                for (int i = graph.getReverseOffsetOfNode(node); i < graph.getReverseOffsetOfNode(node + 1); i++) {
+                    flushIfFull(buffer, channel, 4);
+                    buffer.putInt(graph.getIdOfNode(graph.getSrcIDXofReverseEdge(i)));
+                }
+            }
+            for (int id = 0; id < nodeCount; id++) {
+                int node = graph.getIndexOfNodeId(id);
+                for (int i = graph.getReverseOffsetOfNode(node); i < graph.getReverseOffsetOfNode(node + 1); i++) {
+                    flushIfFull(buffer, channel, 4);
+                    buffer.putInt(graph.getWeightOfReverseEdge(i));
+                }
+            }
+            flush(buffer, channel);
+        }
+    }
+
+    /**
+     * This method writes the buffer into the channel if there is no space left for the next value
+     *
+     * @param buffer the write buffer
+     * @param channel the target channel
+     * @param bytes size of the next value
+     * @throws IOException in case the channel can't be written
+     */
+    private static void flushIfFull(ByteBuffer buffer, FileChannel channel, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(buffer, channel);
+        }
+    }
+
+    /**
+     * This method writes the whole content of the buffer into the channel and clears the buffer
+     *
+     * @param buffer the write buffer
+     * @param channel the target channel
+     * @throws IOException in case the channel can't be written
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * This method maps a read-only section of the channel
+     *
+     * @param channel the file channel
+     * @param position start of the section
+     * @param size size of the section in bytes
+     * @return the mapped section in little endian order
+     * @throws IOException in case the section can't be mapped
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public IntBuffer getLatitudes() {
+        return latitudes.duplicate();
+    }
+
+    public IntBuffer getLongitudes() {
+        return longitudes.duplicate();
+    }
+
+    public IntBuffer getOffsets() {
+        return offsets.duplicate();
+    }
+
+    public IntBuffer getTargets() {
+        return targets.duplicate();
+    }
+
+    public IntBuffer getWeights() {
+        return weights.duplicate();
+    }
+
+    public IntBuffer getReverseOffsets() {
+        return reverseOffsets.duplicate();
+    }
+
+    public IntBuffer getReverseSources() {
+        return reverseSources.duplicate();
+    }
+
+    public IntBuffer getReverseWeights() {
+        return reverseWeights.duplicate();
+    }
+
+    /**
+     * Converts a .fmi file into a graph snapshot.
+     * <p>
+     * usage: GraphSnapshot -graph [.fmi file] -out [snapshot file]
+     *
+     * @param args program arguments
+     * @throws IOException in case one of the files can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        String graphPath = args[1];
+        String outPath = args[3];
+
+        System.out.println("Reading graph file and creating graph data structure (" + graphPath + ")");
+        long readStart = System.currentTimeMillis();
+        Graph graph = new Graph(new File(graphPath));
+        long readEnd = System.currentTimeMillis();
+        System.out.println("\tgraph read took " + (readEnd - readStart) + "ms");
+
+        System.out.println("Writing graph snapshot (" + outPath + ")");
+        long writeStart = System.currentTimeMillis();
+        write(graph, new File(outPath));
+        long writeEnd = System.currentTimeMillis();
+        System.out.println("\twriting snapshot took " + (writeEnd - writeStart) + "ms");
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a histogram of non-negative values (e.g. latencies in nanoseconds or numbers of nodes)
+ * with logarithmic buckets like an HDR histogram: every power of two is split into SUB_BUCKETS buckets of equal
+ * width, so the bucket of a value is at most 25% wider than the value itself, over the whole range.
+ * <p>
+ * Every bucket is a LongAdder, so recording is lock-free and threads which record at the same time don't
+ * contend for the same memory. Reading the histogram is only consistent per bucket, which is enough for metrics.
+ */
+public class Histogram {
+
+    /*
+     * number of buckets per power of two, a power of two itself
+     */
+    private static final int SUB_BUCKETS = 4;
+    private static final int SUB_BUCKET_BITS = 2;
+
+    /*
+     * values up to 2^minExponent are counted in the first bucket, values above 2^maxExponent in the last
+     */
+    private final int minExponent;
+    private final int maxExponent;
+    private final LongAdder[] counts;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Class constructor of the Histogram
+     *
+     * @param minExponent values up to 2^minExponent share the first bucket, at least SUB_BUCKET_BITS
+     * @param maxExponent values above 2^maxExponent share the last bucket, at most 62
+     */
+    public Histogram(int minExponent, int maxExponent) {
+        if (minExponent < SUB_BUCKET_BITS || maxExponent > 62 || minExponent >= maxExponent) {
+            throw new IllegalArgumentException("invalid range 2^" + minExponent + " to 2^" + maxExponent);
+        }
+        this.minExponent = minExponent;
+        this.maxExponent = maxExponent;
+        this.counts = new LongAdder[(maxExponent - minExponent) * SUB_BUCKETS + 2];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * This method counts a value
+     *
+     * @param value the value, negative values are counted as 0
+     */
+    public void record(long value) {
+        counts[bucket(value)].increment();
+        sum.add(Math.max(0, value));
+    }
+
+    /**
+     * This method returns the bucket of a value. The buckets include their upper bound but not their lower
+     * bound, so the bucket is found for the value minus one.
+     */
+    private int bucket(long value) {
+        long shifted = value - 1;
+        if (shifted < 1L << minExponent) {
+            return 0;
+        }
+        if (shifted >= 1L << maxExponent) {
+            return counts.length - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(shifted);
+        int subBucket = (int) (shifted >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - minExponent) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * This method returns the number of buckets
+     *
+     * @return the number of buckets, the last one has no upper bound
+     */
+    public int getNumberOfBuckets() {
+        return counts.length;
+    }
+
+    /**
+     * This method returns the largest value of a bucket
+     *
+     * @param bucket index of the bucket
+     * @return the upper bound or Long.MAX_VALUE for the last bucket
+     */
+    public long getUpperBound(int bucket) {
+        if (bucket == 0) {
+            return 1L << minExponent;
+        }
+        if (bucket == counts.length - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = minExponent + (bucket - 1) / SUB_BUCKETS;
+        int subBucket = (bucket - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (subBucket + 1) << (exponent - SUB_BUCKET_BITS));
+    }
+
+    /**
+     * This method returns the number of values in each bucket
+     *
+     * @return a new array with the count of each bucket
+     */
+    public long[] getCounts() {
+        long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    /**
+     * This method returns the sum of all values
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * This class represents an indexed 4-ary min heap of node indices with int keys.
+ * In contrast to a PriorityQueue it supports decrease-key, so every node is contained at most once,
+ * and it doesn't allocate an object per insertion.
+ */
+public class IndexedMinHeap {
+
+    /*
+     * number of children of each heap entry
+     */
+    private static final int ARITY = 4;
+    /*
+     * initial size of the heap arrays, they grow on demand
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /*
+     * position value of nodes which are not contained in the heap
+     */
+    private static final int NOT_CONTAINED = -1;
+
+    /*
+     * the nodes in heap order
+     */
+    private int[] heap;
+    /*
+     * the key of the node at the same heap position
+     */
+    private int[] keys;
+    /*
+     * the heap position of each node or NOT_CONTAINED
+     */
+    private final int[] position;
+    /*
+     * number of nodes inside the heap
+     */
+    private int size;
+    /*
+     * number of removed nodes and of all operations which changed the heap (insertions, decreased keys and
+     * removals) since the heap was created
+     */
+    private long polls;
+    private long operations;
+
+    /**
+     * Class constructor of the IndexedMinHeap
+     *
+     * @param numberOfNodes the number of nodes which can be inserted (node indices 0 to numberOfNodes - 1)
+     */
+    public IndexedMinHeap(int numberOfNodes) {
+        int capacity = Math.max(1, Math.min(INITIAL_CAPACITY, numberOfNodes));
+        this.heap = new int[capacity];
+        this.keys = new int[capacity];
+        this.position = new int[numberOfNodes];
+        Arrays.fill(position, NOT_CONTAINED);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method tells if the node is inside the heap
+     *
+     * @param node node index
+     * @return true if the node is inside the heap
+     */
+    public boolean contains(int node) {
+        return position[node] != NOT_CONTAINED;
+    }
+
+    /**
+     * This method inserts the node or decreases its key if it's already inside the heap.
+     * Keys which are larger than the current key of the node are ignored.
+     *
+     * @param node node index
+     * @param key  the new key
+     */
+    public void insertOrDecrease(int node, int key) {
+        int index = position[node];
+        if (index == NOT_CONTAINED) {
+            if (size == heap.length) {
+                int capacity = (int) Math.min((long) heap.length * 2, position.length);
+                heap = Arrays.copyOf(heap, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            index = size++;
+        } else if (key >= keys[index]) {
+            return;
+        }
+        operations++;
+        siftUp(index, node, key);
+    }
+
+    /**
+     * @return the smallest key inside the heap
+     */
+    public int peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * @return the node with the smallest key inside the heap
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * This method removes the node with the smallest key
+     *
+     * @return the removed node
+     */
+    public int poll() {
+        int node = heap[0];
+        position[node] = NOT_CONTAINED;
+        size--;
+        polls++;
+        operations++;
+        if (size > 0) {
+            siftDown(0, heap[size], keys[size]);
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of removed nodes since the heap was created
+     */
+    public long getPolls() {
+        return polls;
+    }
+
+    /**
+     * @return the number of insertions, decreased keys and removals since the heap was created
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * This method removes all nodes. It only touches the nodes which are still inside the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = NOT_CONTAINED;
+        }
+        size = 0;
+    }
+
+    /**
+     * This method moves the node from the given index towards the root until the heap order is restored
+     *
+     * @param index start index
+     * @param node  the node which gets placed
+     * @param key   key of the node
+     */
+    private void siftUp(int index, int node, int key) {
+        while (index > 0) {
+            int parent = (index - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            keys[index] = keys[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = node;
+        keys[index] = key;
+        position[node] = index;
+    }
+
+    /**
+     * This method moves the node from the given index towards the leaves until the heap order is restored
+     *
+     * @param index start index
+     * @param node  the node which gets placed
+     * @param key   key of the node
+     */
+    private void siftDown(int index, int node, int key) {
+        while (true) {
+            int firstChild = index * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] < keys[minChild]) {
+                    minChild = child;
+                }
+            }
+            if (keys[minChild] >= key) {
+                break;
+            }
+            heap[index] = heap[minChild];
+            keys[index] = keys[minChild];
+            position[heap[index]] = index;
+            index = minChild;
+        }
+        heap[index] = node;
+        keys[index] = key;
+        position[node] = index;
+    }
+}
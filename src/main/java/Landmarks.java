@@ -0,0 +1,322 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the preprocessed data of the ALT algorithm (A*, landmarks and triangle inequality).
+ * For a few landmark nodes it stores the distances from the landmark to every node and from every node to
+ * the landmark. Because of the triangle inequality these distances give a lower bound of the distance between
+ * any two nodes, which guides the A* search of the PathFinder.
+ * <p>
+ * The landmarks are chosen with the farthest selection: every new landmark is the node which is farthest
+ * away from all landmarks chosen so far.
+ * <p>
+ * File layout (little endian): magic, version, node count, landmark count, graph fingerprint,
+ * landmark nodes (int[count]), followed by the distances from and to each landmark (int[nodeCount] each).
+ */
+public class Landmarks {
+
+    /*
+     * number of landmarks which are chosen by default
+     */
+    public static final int DEFAULT_COUNT = 8;
+    /*
+     * number of landmarks which are used by a single query
+     */
+    public static final int ACTIVE_COUNT = 4;
+    /*
+     * maximum number of reverse searches which run at once while the landmarks are built, each needs a search
+     * space of 16 bytes per node (about 400 MB for Germany) besides the distances of the landmarks
+     */
+    private static final int MAX_PARALLEL_SEARCHES = 4;
+    /*
+     * "LMK1" in little endian, marks a file as landmark file
+     */
+    private static final int MAGIC = 0x314B4D4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    /*
+     * the landmark nodes
+     */
+    private final int[] landmarks;
+    /*
+     * fromLandmark[i][v] is the distance from landmark i to node v
+     */
+    private final int[][] fromLandmark;
+    /*
+     * toLandmark[i][v] is the distance from node v to landmark i
+     */
+    private final int[][] toLandmark;
+
+    /**
+     * Class constructor of the Landmarks
+     *
+     * @param landmarks    the landmark nodes
+     * @param fromLandmark the distances from each landmark to all nodes
+     * @param toLandmark   the distances from all nodes to each landmark
+     */
+    private Landmarks(int[] landmarks, int[][] fromLandmark, int[][] toLandmark) {
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * This method chooses the landmarks and calculates all distances from and to them. The forward searches are
+     * needed for the selection of the next landmark, the reverse searches run in parallel afterwards.
+     *
+     * @param graph the graph
+     * @param count number of landmarks, fewer are chosen if the landmarks reach fewer other nodes
+     * @return the landmarks of the graph
+     */
+    public static Landmarks build(Graph graph, int count) {
+        int numberOfNodes = graph.getNumberOfNodes();
+        count = Math.min(count, numberOfNodes);
+        int[] candidates = new int[count];
+        int[][] candidateDistances = new int[count][];
+
+        //the landmarks may be built by a query which holds a PathFinder of the bounded pool (e.g. a batch
+        //query), so they don't borrow from the pool but create their own for the time of the preprocessing
+        PathFinder pathFinder = new PathFinder(graph);
+        //the first landmark is the farthest node from the node next to the center, which is most likely
+        //inside the largest connected component
+        int[] distances = pathFinder.oneToAllDijkstra(centralNode(graph));
+        int[] minDistance = new int[numberOfNodes];
+        Arrays.fill(minDistance, Integer.MAX_VALUE);
+        int next = count > 0 ? farthestNode(distances, minDistance) : -1;
+
+        int chosen = 0;
+        while (next >= 0) {
+            candidates[chosen] = next;
+            candidateDistances[chosen] = pathFinder.oneToAllDijkstra(next);
+            for (int node = 0; node < numberOfNodes; node++) {
+                minDistance[node] = Math.min(minDistance[node], candidateDistances[chosen][node]);
+            }
+            chosen++;
+            next = chosen < count ? farthestNode(minDistance, minDistance) : -1;
+        }
+        //fewer landmarks than requested if the landmarks don't reach enough other nodes
+        int[] landmarks = Arrays.copyOf(candidates, chosen);
+        int[][] fromLandmark = Arrays.copyOf(candidateDistances, chosen);
+        int[][] toLandmark = new int[chosen][];
+
+        //a few tasks, each with its own PathFinder for several landmarks, which only allocates the search space
+        //of the reverse graph
+        int tasks = Math.min(chosen, Math.min(MAX_PARALLEL_SEARCHES, Runtime.getRuntime().availableProcessors()));
+        int landmarkCount = chosen;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            PathFinder reversePathFinder = task == 0 ? pathFinder : new PathFinder(graph);
+            for (int i = task; i < landmarkCount; i += tasks) {
+                toLandmark[i] = reversePathFinder.reverseOneToAllDijkstra(landmarks[i]);
+            }
+        });
+
+        return new Landmarks(landmarks, fromLandmark, toLandmark);
+    }
+
+    /**
+     * This method returns the node which is closest to the center of the bounding box of all nodes
+     *
+     * @param graph the graph
+     * @return the central node
+     */
+    private static int centralNode(Graph graph) {
+        Rectangle boundary = graph.getBoundary();
+        double x = boundary.getPoint().getXval();
+        double y = boundary.getPoint().getYval();
+        int central = 0;
+        double minDistance = Double.MAX_VALUE;
+        for (int node = 0; node < graph.getNumberOfNodes(); node++) {
+            double dx = graph.getLongitudeOfNode(node) - x;
+            double dy = graph.getLatitudeOfNode(node) - y;
+            if (dx * dx + dy * dy < minDistance) {
+                minDistance = dx * dx + dy * dy;
+                central = node;
+            }
+        }
+        return central;
+    }
+
+    /**
+     * This method returns the node with the largest finite distance. Nodes which are excluded (distance 0 in
+     * the exclusion array, e.g. landmarks) are skipped.
+     *
+     * @param distances the distances of all nodes
+     * @param exclusion array in which chosen landmarks have the distance 0
+     * @return the node with the largest finite distance or -1 if no node is reachable and not excluded
+     */
+    private static int farthestNode(int[] distances, int[] exclusion) {
+        int farthest = -1;
+        int maxDistance = -1;
+        for (int node = 0; node < distances.length; node++) {
+            if (distances[node] != Integer.MAX_VALUE && distances[node] > maxDistance && exclusion[node] != 0) {
+                maxDistance = distances[node];
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * This method chooses the landmarks which give the best lower bound for the distance from the starting point
+     * to the end point.
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @param active          array in which the indices of the chosen landmarks are written
+     * @return number of chosen landmarks
+     */
+    public int selectActive(int startingPointID, int endPointID, int[] active) {
+        int activeCount = Math.min(active.length, landmarks.length);
+        boolean[] chosen = new boolean[landmarks.length];
+        for (int a = 0; a < activeCount; a++) {
+            int best = -1;
+            int bestBound = -1;
+            for (int i = 0; i < landmarks.length; i++) {
+                int bound = lowerBound(i, startingPointID, endPointID);
+                if (!chosen[i] && bound > bestBound) {
+                    best = i;
+                    bestBound = bound;
+                }
+            }
+            chosen[best] = true;
+            active[a] = best;
+        }
+        return activeCount;
+    }
+
+    /**
+     * This method calculates a lower bound of the distance from the node to the end point using the given landmarks
+     *
+     * @param node        node index
+     * @param endPointID  target index
+     * @param active      indices of the landmarks which are used
+     * @param activeCount number of landmarks which are used
+     * @return a value which is never larger than the value of the shortest path from the node to the end point
+     */
+    public int lowerBound(int node, int endPointID, int[] active, int activeCount) {
+        int bound = 0;
+        for (int i = 0; i < activeCount; i++) {
+            bound = Math.max(bound, lowerBound(active[i], node, endPointID));
+        }
+        return bound;
+    }
+
+    /**
+     * This method calculates the lower bound of one landmark with the triangle inequality:
+     * d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L).
+     * Terms with unreachable distances are ignored.
+     *
+     * @param landmark   index of the landmark
+     * @param node       node index
+     * @param endPointID target index
+     * @return the lower bound (at least 0)
+     */
+    private int lowerBound(int landmark, int node, int endPointID) {
+        int bound = 0;
+        int fromToTarget = fromLandmark[landmark][endPointID];
+        int fromToNode = fromLandmark[landmark][node];
+        if (fromToTarget != Integer.MAX_VALUE && fromToNode != Integer.MAX_VALUE) {
+            bound = Math.max(bound, fromToTarget - fromToNode);
+        }
+        int nodeTo = toLandmark[landmark][node];
+        int targetTo = toLandmark[landmark][endPointID];
+        if (nodeTo != Integer.MAX_VALUE && targetTo != Integer.MAX_VALUE) {
+            bound = Math.max(bound, nodeTo - targetTo);
+        }
+        return bound;
+    }
+
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * This method writes the landmarks into the given file
+     *
+     * @param file        the target file
+     * @param fingerprint fingerprint of the graph, see Graph.getFingerprint()
+     * @throws IOException in case the file can't be written
+     */
+    public void save(File file, long fingerprint) throws IOException {
+        int numberOfNodes = fromLandmark.length == 0 ? 0 : fromLandmark[0].length;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4 * landmarks.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(numberOfNodes).putInt(landmarks.length).putLong(fingerprint);
+            for (int landmark : landmarks) {
+                header.putInt(landmark);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * numberOfNodes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < landmarks.length; i++) {
+                for (int[] distances : new int[][]{fromLandmark[i], toLandmark[i]}) {
+                    buffer.clear();
+                    buffer.asIntBuffer().put(distances);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This method loads landmarks from the given file
+     *
+     * @param file        the landmark file
+     * @param graph       the graph the landmarks are used for
+     * @return the landmarks or null if the file doesn't exist or belongs to another graph
+     * @throws IOException in case the file can't be read
+     */
+    public static Landmarks load(File file, Graph graph) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            int numberOfNodes = header.getInt();
+            int count = header.getInt();
+            long fingerprint = header.getLong();
+            if (numberOfNodes != graph.getNumberOfNodes() || fingerprint != graph.getFingerprint()
+                    || channel.size() != HEADER_SIZE + 4L * count + 8L * count * numberOfNodes) {
+                return null;
+            }
+
+            int[] landmarks = new int[count];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 4L * count).order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer().get(landmarks);
+
+            int[][] fromLandmark = new int[count][numberOfNodes];
+            int[][] toLandmark = new int[count][numberOfNodes];
+            long position = HEADER_SIZE + 4L * count;
+            for (int i = 0; i < count; i++) {
+                for (int[] distances : new int[][]{fromLandmark[i], toLandmark[i]}) {
+                    IntBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * numberOfNodes)
+                            .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                    section.get(distances);
+                    position += 4L * numberOfNodes;
+                }
+            }
+            return new Landmarks(landmarks, fromLandmark, toLandmark);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * This class represents an exchange whose attributes belong to this exchange alone, everything else is passed
+ * to the exchange of the HttpServer. The HttpServer shares the attributes between all exchanges of a context, so
+ * they can't carry anything of one request, e.g. the detail of its entry in the access log (see setLogDetail).
+ * <p>
+ * An exchange is answered by one thread at a time, so the attributes aren't synchronized.
+ */
+public class LoggedExchange extends HttpExchange {
+
+    /*
+     * name of the attribute which holds the detail of the access log
+     */
+    static final String LOG_DETAIL = "logDetail";
+
+    private final HttpExchange exchange;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    /**
+     * Class constructor of the LoggedExchange
+     *
+     * @param exchange the exchange of the HttpServer
+     */
+    public LoggedExchange(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * This method sets the description of the response in the access log. It is only called if the request is
+     * logged, so the handler doesn't build descriptions of requests which aren't sampled.
+     *
+     * @param exchange the exchange, the detail is ignored if it isn't a LoggedExchange
+     * @param detail   supplies the description of the response
+     */
+    public static void setLogDetail(HttpExchange exchange, Supplier<String> detail) {
+        if (exchange instanceof LoggedExchange) {
+            exchange.setAttribute(LOG_DETAIL, detail);
+        }
+    }
+
+    /**
+     * This method returns the description of the response in the access log
+     *
+     * @return the description or null if the handler didn't set one
+     */
+    @SuppressWarnings("unchecked")
+    public String getLogDetail() {
+        Supplier<String> detail = (Supplier<String>) attributes.get(LOG_DETAIL);
+        return detail == null ? null : detail.get();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return exchange.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return exchange.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return exchange.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return exchange.getHttpContext();
+    }
+
+    @Override
+    public void close() {
+        exchange.close();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return exchange.getRequestBody();
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return exchange.getResponseBody();
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        exchange.sendResponseHeaders(rCode, responseLength);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return exchange.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return exchange.getResponseCode();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return exchange.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return exchange.getProtocol();
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        exchange.setStreams(i, o);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return exchange.getPrincipal();
+    }
+}
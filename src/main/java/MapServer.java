@@ -1,13 +1,19 @@
 import com.sun.net.httpserver.HttpHandler;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.sun.net.httpserver.HttpExchange;
 /**
@@ -18,18 +24,137 @@ import com.sun.net.httpserver.HttpExchange;
  */
 public class MapServer {
 
+  /*
+   * number of paths the route cache holds by default
+   */
+  static final int DEFAULT_CACHE_CAPACITY = 10_000;
+
   public static void main(String[] args) throws IOException {
 	long start = System.currentTimeMillis();
 	System.out.println("Building Server with the necessary components...");
     com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress(8080), 0);
-    Graph graph = new Graph(new File(args[1]));
+    //optional: -order [name of a NodeOrder], renumbers the nodes internally
+    //          -cache [number of paths], size of the route cache, 0 disables it
+    //          -cache-policy [lru or lfu], path which is evicted from a full route cache
+    //          -tree-cache [megabytes], caches the shortest path trees of frequent sources
+    //          -tree-cache-off-heap, stores these trees outside of the heap
+    //          -workers [number of threads], threads which calculate routes, one per core by default
+    //          -queue [number of requests], requests which may wait for a worker, 4 per worker by default
+    //          -limits [endpoint=number,...], requests an endpoint answers at once, e.g. request=16,matrix=2,snap=4
+    //          -platform-threads, dispatches requests to platform threads instead of virtual threads
+    //          -access-log [file or off], file the access log is appended to, the console by default
+    //          -log-sample [rate], share of the successful requests in the access log, 1 by default
+    //          -log-max-length [characters], length of query and detail of an entry of the access log
+    //          -prepare [algorithm,...], preprocessing which is loaded or built at start instead of on first use,
+    //          e.g. -prepare ch
+    NodeOrder nodeOrder = NodeOrder.INPUT;
+    int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    RouteCache.Policy cachePolicy = RouteCache.Policy.LRU;
+    long treeCacheBudget = 0;
+    boolean treeCacheOffHeap = false;
+    int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+    int queueCapacity = -1;
+    String limits = "";
+    boolean virtualThreads = true;
+    String accessLogFile = null;
+    double logSampleRate = 1;
+    int logMaxLength = AccessLog.DEFAULT_MAX_LENGTH;
+    String prepare = "";
+    for (int i = 2; i < args.length; i++) {
+        if (args[i].equals("-order") && i + 1 < args.length) {
+            nodeOrder = NodeOrder.fromName(args[++i]);
+            if (nodeOrder == null) {
+                throw new IllegalArgumentException("Unknown node order: " + args[i]);
+            }
+        } else if (args[i].equals("-cache") && i + 1 < args.length) {
+            cacheCapacity = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-cache-policy") && i + 1 < args.length) {
+            cachePolicy = RouteCache.Policy.fromName(args[++i]);
+            if (cachePolicy == null) {
+                throw new IllegalArgumentException("Unknown cache policy: " + args[i]);
+            }
+        } else if (args[i].equals("-tree-cache") && i + 1 < args.length) {
+            treeCacheBudget = Long.parseLong(args[++i]) << 20;
+        } else if (args[i].equals("-tree-cache-off-heap")) {
+            treeCacheOffHeap = true;
+        } else if (args[i].equals("-workers") && i + 1 < args.length) {
+            numberOfWorkers = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-queue") && i + 1 < args.length) {
+            queueCapacity = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-limits") && i + 1 < args.length) {
+            limits = args[++i];
+        } else if (args[i].equals("-platform-threads")) {
+            virtualThreads = false;
+        } else if (args[i].equals("-access-log") && i + 1 < args.length) {
+            accessLogFile = args[++i];
+        } else if (args[i].equals("-log-sample") && i + 1 < args.length) {
+            logSampleRate = Double.parseDouble(args[++i]);
+        } else if (args[i].equals("-log-max-length") && i + 1 < args.length) {
+            logMaxLength = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-prepare") && i + 1 < args.length) {
+            prepare = args[++i];
+        }
+    }
+    if (queueCapacity < 0) {
+        queueCapacity = 4 * numberOfWorkers;
+    }
+    //by default every route request may run or wait, the other endpoints are more expensive
+    HashMap<String, Integer> endpointLimits = new HashMap<>();
+    endpointLimits.put("request", numberOfWorkers + queueCapacity);
+    endpointLimits.put("matrix", Math.max(1, numberOfWorkers / 2));
+    endpointLimits.put("snap", numberOfWorkers);
+    for (String limit : limits.split(",")) {
+        String[] endpointLimit = limit.split("=");
+        if (endpointLimit.length == 2 && endpointLimits.containsKey(endpointLimit[0])) {
+            endpointLimits.put(endpointLimit[0], Integer.parseInt(endpointLimit[1]));
+        } else if (!limit.isEmpty()) {
+            throw new IllegalArgumentException("Unknown endpoint limit: " + limit);
+        }
+    }
+    Graph graph = new Graph(new File(args[1]), nodeOrder);
+    //a search runs on a worker, so there are never more PathFinders than workers
+    graph.limitSearches(numberOfWorkers);
+    graph.enableShortestPathTreeCache(treeCacheBudget, treeCacheOffHeap);
+    RouteCache routeCache = new RouteCache(cacheCapacity, cachePolicy);
+    //the preprocessing of the other algorithms is loaded or built by the first request which needs it
+    for (String name : prepare.split(",")) {
+        if (!name.isEmpty()) {
+            RoutingAlgorithm algorithm = RoutingAlgorithm.fromName(name);
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Unknown algorithm: " + name);
+            }
+            graph.prepare(algorithm);
+        }
+    }
+    //the searches of the preprocessing aren't recorded
+    Metrics metrics = new Metrics();
+    graph.enableMetrics(metrics);
     System.out.println("finished");
     long finish = System.currentTimeMillis();
     System.out.println("Bulding server took " + (finish-start) + "ms");
     
+    //a slow route never blocks the other requests, calculations run on the bounded pool of workers
+    RequestExecutor executor = new RequestExecutor(numberOfWorkers, queueCapacity, virtualThreads);
+    System.out.println("dispatching requests to " + (executor.isVirtual() ? "virtual" : "platform") + " threads, "
+            + numberOfWorkers + " workers, queue of " + queueCapacity + ", limits " + endpointLimits);
+    //the request threads never write the log themselves, see AccessLog
+    AccessLog accessLog = null;
+    if (accessLogFile == null || !accessLogFile.equals("off")) {
+        Writer logWriter = accessLogFile == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(accessLogFile), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        accessLog = AccessLog.start(logWriter, AccessLog.DEFAULT_CAPACITY, logSampleRate, logMaxLength);
+    }
     server.createContext("/", new FileHandler());
-    server.createContext("/request", new RequestHandler(graph));
-    server.setExecutor(null);
+    server.createContext("/request", new TimedHandler("request", executor.limit("request",
+            new RequestHandler(graph, routeCache, executor), endpointLimits.get("request")), metrics, accessLog));
+    server.createContext("/matrix", new TimedHandler("matrix", executor.limit("matrix",
+            new MatrixHandler(graph, executor), endpointLimits.get("matrix")), metrics, accessLog));
+    server.createContext("/snap", new TimedHandler("snap", executor.limit("snap",
+            new SnapHandler(graph, executor), endpointLimits.get("snap")), metrics, accessLog));
+    server.createContext("/metrics", new MetricsHandler(metrics, graph, routeCache, executor, accessLog));
+    server.setExecutor(executor.getDispatcher());
     server.start();
   }
   
@@ -63,17 +188,38 @@ public class MapServer {
 	
 	//represents graph object
 	Graph graph;
+
+	//paths of previous route queries
+	RouteCache routeCache;
+
+	//runs the calculations on the workers
+	RequestExecutor executor;
 	
 	//saves the different paramters
 	HashMap<String, String> parameters;
+
+	/**
+	 * This class represents a calculated route: the nodeIDs of start and target, the number of nodes of the
+	 * path and the indices of the nodes which are sent
+	 */
+	static class Route {
+		int srcId;
+		int trgId;
+		int pathLength;
+		int[] geometry;
+	}
 	
 	/**
 	 * Constructor of the RequestHandler class
 	 * 
 	 * @param graph the graph object
+	 * @param routeCache the cache of the route queries
+	 * @param executor the executor which runs the calculations on its workers
 	 */
-	public RequestHandler(Graph graph) {
+	public RequestHandler(Graph graph, RouteCache routeCache, RequestExecutor executor) {
 		this.graph = graph;
+		this.routeCache = routeCache;
+		this.executor = executor;
 		this.parameters = new HashMap<>();
 	}
 	
@@ -81,7 +227,8 @@ public class MapServer {
 	 * This method handles incoming AJAX requests by extracting the parameters first and
 	 * after that responding differently dependent on the algotype parameter:
 	 * 
-	 * if dijkstra: calculating the shortest path between two coordinates given by the request
+	 * if dijkstra, bidijkstra, astar, alt or ch (see RoutingAlgorithm): calculating the shortest path between two coordinates
+	 * given by the request with the named algorithm
 	 * if next node: calculating the nearest node of the coordinate given by the request
 	 * else: responds with "Unknown algorithm type: " + algoType 
 	 * 
@@ -90,12 +237,20 @@ public class MapServer {
 	 * "start" is "48.779755, 9.19487"
 	 * "target" is "48.766179, 9.167061"
 	 * -> Uses dijkstra algorithm and adds a "&" and the nodeIDs of start and target
+	 * the path of a repeated query is taken from the route cache
+	 * with "&format=binary" the coordinates of the path are sent as binary array (see PathWriter) and the
+	 * nodeIDs of start and target in the headers X-Source-Node and X-Target-Node, with "&format=polyline" as
+	 * encoded polyline followed by "&" and the nodeIDs
+	 * with "&zoom=[level]" or "&tolerance=[meters]" the path is simplified (see PathSimplifier) before it is sent
+	 * only snapping, the search and the simplification run on a worker (see RequestExecutor.compute), the
+	 * response is written by the thread of the request
 	 * 
 	 */
     @Override
     public void handle(HttpExchange httpExchange) throws IOException {
         String query = httpExchange.getRequestURI().getQuery();
         String response = "";
+        int status = 200;
         HashMap<String, String> parameters = new HashMap<>();
         boolean shutdown = false;
         
@@ -105,6 +260,9 @@ public class MapServer {
             String algoType = "";
             String start = "";
             String target = "";
+            String format = "json";
+            String zoom = "";
+            String tolerance = "";
             for (String param : params) {
                 String[] keyValue = param.split("=");
                 if (keyValue[0].equals("algotype")) {
@@ -116,44 +274,125 @@ public class MapServer {
                 } else if (keyValue[0].equals("target")) {
                     target = keyValue[1];
                     parameters.put(keyValue[0], keyValue[1]);
+                } else if (keyValue[0].equals("format")) {
+                    format = keyValue[1];
+                    parameters.put(keyValue[0], keyValue[1]);
+                } else if (keyValue[0].equals("zoom")) {
+                    zoom = keyValue[1];
+                    parameters.put(keyValue[0], keyValue[1]);
+                } else if (keyValue[0].equals("tolerance")) {
+                    tolerance = keyValue[1];
+                    parameters.put(keyValue[0], keyValue[1]);
                 }
             }
             
             //response based on query parameters
-            if (algoType.equals("dijkstra")) {
-                System.out.println("Using Dijkstra algorithm, finding path from " + start + " to " + target);
+            RoutingAlgorithm algorithm = RoutingAlgorithm.fromName(algoType);
+            double simplification = 0;
+            try {
+                if (!zoom.isEmpty()) {
+                    simplification = PathSimplifier.toleranceOfZoom(Integer.parseInt(zoom), getLat(start));
+                } else if (!tolerance.isEmpty()) {
+                    simplification = Double.parseDouble(tolerance);
+                }
+                if (!(simplification >= 0) || Double.isInfinite(simplification)) {
+                    throw new IllegalArgumentException("invalid tolerance " + tolerance);
+                }
+            } catch (IllegalArgumentException e) {
+                //NumberFormatException is an IllegalArgumentException
+                status = 400;
+                response = "Invalid route request: " + e.getMessage();
+            }
+            if (status != 200) {
+                String message = response;
+                LoggedExchange.setLogDetail(httpExchange, () -> message);
+
+            } else if (algorithm != null) {
                 double[] src = {getLon(start), getLat(start)};
                 double[] trg = {getLon(target), getLat(target)};
-                int srcIndex = graph.getIndexOfNode(src);
-                int trgIndex = graph.getIndexOfNode(trg);
-                response = graph.getPathCoords(srcIndex, trgIndex).toString() + "&" + srcIndex + "&" + trgIndex;
-                System.out.println("response: " + response + "&" + srcIndex + "&" + trgIndex);
+                double simplifyTolerance = simplification;
+                Route route = executor.compute(() -> {
+                    Route calculated = new Route();
+                    int srcIndex = graph.getIndexOfNode(src);
+                    int trgIndex = graph.getIndexOfNode(trg);
+                    calculated.srcId = graph.getIdOfNode(srcIndex);
+                    calculated.trgId = graph.getIdOfNode(trgIndex);
+                    int[] path = routeCache.get(graph, srcIndex, trgIndex);
+                    if (path == null) {
+                        path = graph.getPath(srcIndex, trgIndex, algorithm);
+                        routeCache.put(graph, srcIndex, trgIndex, path);
+                    }
+                    calculated.pathLength = path.length;
+                    calculated.geometry = PathSimplifier.simplify(graph, path, simplifyTolerance);
+                    return calculated;
+                });
+                int srcId = route.srcId;
+                int trgId = route.trgId;
+                int[] geometry = route.geometry;
+                LoggedExchange.setLogDetail(httpExchange, () -> "path of " + route.pathLength + " nodes ("
+                        + geometry.length + " sent)&" + srcId + "&" + trgId);
+
+                //the coordinates are streamed, so the length of the response isn't known in advance (chunked encoding)
+                PathWriter writer;
+                if (format.equals("binary")) {
+                    httpExchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                    httpExchange.getResponseHeaders().set("X-Source-Node", String.valueOf(srcId));
+                    httpExchange.getResponseHeaders().set("X-Target-Node", String.valueOf(trgId));
+                    httpExchange.sendResponseHeaders(200, 0);
+                    writer = new PathWriter(httpExchange.getResponseBody());
+                    writer.writeBinary(graph, geometry);
+                } else {
+                    httpExchange.sendResponseHeaders(200, 0);
+                    writer = new PathWriter(httpExchange.getResponseBody());
+                    if (format.equals("polyline")) {
+                        writer.writePolyline(graph, geometry);
+                    } else {
+                        writer.writeJson(graph, geometry);
+                    }
+                    writer.writeAscii("&" + srcId + "&" + trgId);
+                }
+                writer.close();
+                return;
 
             } else if (algoType.equals("nextNode")) {
-                System.out.println("Using nearestNode algorithm, getting nearest node from " + start);
-                double[] result = graph.getClosestDistance(getLon(start), getLat(start));
-                response = Arrays.toString(result) + "&" + graph.getIndexOfNode(result);
-                System.out.println("response: " + response + "&" + graph.getIndexOfNode(result));
+                double lon = getLon(start);
+                double lat = getLat(start);
+                int nodeIDX = executor.compute(() -> graph.getClosestNode(lon, lat));
+                double[] result = {graph.getLongitudeOfNode(nodeIDX), graph.getLatitudeOfNode(nodeIDX)};
+                String position = Arrays.toString(result) + "&" + graph.getIdOfNode(nodeIDX);
+                LoggedExchange.setLogDetail(httpExchange, () -> position);
+                response = position;
 
             } else if (algoType.equals("exit")) {
                 System.out.println("Shutting down...");
+                System.out.println("route cache: " + routeCache.getHits() + " hits, " + routeCache.getMisses()
+                        + " misses (" + String.format("%.1f", 100 * routeCache.getHitRate()) + "%), "
+                        + routeCache.getEvictions() + " evictions");
                 shutdown = true;
                 response = "Server stopped.";
 
             } else {
                 //should never occur
-                response = "Unknown algorithm type: " + algoType;
-                System.out.println("response: " + response);
+                String message = "Unknown algorithm type: " + algoType;
+                LoggedExchange.setLogDetail(httpExchange, () -> message);
+                response = message;
             }
         }
         
         //response
-        httpExchange.sendResponseHeaders(200, response.getBytes().length);
+        byte[] bytes = response.getBytes();
+        httpExchange.sendResponseHeaders(status, bytes.length);
         OutputStream os = httpExchange.getResponseBody();
-        os.write(response.getBytes());
+        os.write(bytes);
         os.close();
 
         if (shutdown){
+            //the calculations of other requests are finished first
+            try {
+                executor.shutdown(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             System.exit(0);
         }
     }
@@ -184,4 +423,472 @@ public class MapServer {
 
 
   }
+
+  /**
+   * This class, which inherits the HttpHandler class, handles distance matrix requests. Both coordinate lists
+   * are snapped to their closest nodes and the distances between all pairs are calculated at once
+   * (see Graph.distanceMatrix).
+   *
+   * example: /matrix?sources=48.779755,9.19487;48.766179,9.167061&targets=48.7,9.1
+   * "targets" is optional, without it the distances between all sources are calculated
+   * -> responds with {"sources":[srcIds],"targets":[trgIds],"distances":[[row of source 0],...]},
+   *    unreachable targets have the distance null
+   * a request with more than MAX_DISTANCES distances is rejected with 400
+   * snapping and the distances are calculated on a worker (see RequestExecutor.compute), their parallel searches
+   * on the common ForkJoinPool
+   */
+  static class MatrixHandler implements HttpHandler {
+
+	/*
+	 * maximum number of distances of a request, sources times targets
+	 */
+	private static final int MAX_DISTANCES = 250_000;
+
+	//represents graph object
+	Graph graph;
+
+	//runs the calculations on the workers
+	RequestExecutor executor;
+
+	/**
+	 * Constructor of the MatrixHandler class
+	 *
+	 * @param graph the graph object
+	 * @param executor the executor which runs the calculations on its workers
+	 */
+	public MatrixHandler(Graph graph, RequestExecutor executor) {
+		this.graph = graph;
+		this.executor = executor;
+	}
+
+	@Override
+	public void handle(HttpExchange httpExchange) throws IOException {
+		String query = httpExchange.getRequestURI().getQuery();
+		String sources = null;
+		String targets = null;
+		if (query != null) {
+			for (String param : query.split("&")) {
+				String[] keyValue = param.split("=");
+				if (keyValue.length == 2 && keyValue[0].equals("sources")) {
+					sources = keyValue[1];
+				} else if (keyValue.length == 2 && keyValue[0].equals("targets")) {
+					targets = keyValue[1];
+				}
+			}
+		}
+
+		int status = 200;
+		String response;
+		try {
+			if (sources == null) {
+				throw new IllegalArgumentException("missing parameter sources");
+			}
+			double[][] sourceLonsLats = parseCoordinates(sources);
+			double[][] targetLonsLats = targets == null ? sourceLonsLats : parseCoordinates(targets);
+			if ((long) sourceLonsLats[0].length * targetLonsLats[0].length > MAX_DISTANCES) {
+				throw new IllegalArgumentException("more than " + MAX_DISTANCES + " distances");
+			}
+			//the snapped sources and targets, the matrix is the result of the calculation
+			int[][] nodes = new int[2][];
+			int[][] matrix = executor.compute(() -> {
+				nodes[0] = graph.getClosestNodes(sourceLonsLats[0], sourceLonsLats[1]);
+				nodes[1] = targetLonsLats == sourceLonsLats ? nodes[0]
+						: graph.getClosestNodes(targetLonsLats[0], targetLonsLats[1]);
+				return graph.distanceMatrix(nodes[0], nodes[1]);
+			});
+			int[] sourceNodes = nodes[0];
+			int[] targetNodes = nodes[1];
+
+			StringBuilder builder = new StringBuilder();
+			builder.append("{\"sources\":");
+			appendNodeIds(builder, graph, sourceNodes);
+			builder.append(",\"targets\":");
+			appendNodeIds(builder, graph, targetNodes);
+			builder.append(",\"distances\":[");
+			for (int i = 0; i < matrix.length; i++) {
+				builder.append(i == 0 ? "[" : ",[");
+				for (int j = 0; j < matrix[i].length; j++) {
+					if (j > 0) {
+						builder.append(',');
+					}
+					if (matrix[i][j] == Integer.MAX_VALUE) {
+						builder.append("null");
+					} else {
+						builder.append(matrix[i][j]);
+					}
+				}
+				builder.append(']');
+			}
+			response = builder.append("]}").toString();
+			LoggedExchange.setLogDetail(httpExchange, () -> sourceNodes.length + "x" + targetNodes.length + " distances");
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			String message = "Invalid matrix request: " + e.getMessage();
+			LoggedExchange.setLogDetail(httpExchange, () -> message);
+			response = message;
+		}
+
+		byte[] bytes = response.getBytes();
+		httpExchange.getResponseHeaders().set("Content-Type", status == 200 ? "application/json" : "text/plain");
+		httpExchange.sendResponseHeaders(status, bytes.length);
+		OutputStream os = httpExchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+  }
+
+  /**
+   * This class, which inherits the HttpHandler class, snaps many coordinates to their closest nodes with one
+   * request (see Graph.getClosestNodes).
+   *
+   * example: POST /snap with the body "48.779755,9.19487;48.766179,9.167061"
+   * the coordinates "lat,lon" are separated by ";" or line breaks
+   * -> responds with {"nodes":[nodeIds],"coordinates":[[lat,lon] of each node,...]}
+   * a body larger than MAX_BODY_SIZE is rejected with 413 before it is read completely
+   * the coordinates are snapped on a worker (see RequestExecutor.compute), their parallel searches run on the
+   * common ForkJoinPool
+   */
+  static class SnapHandler implements HttpHandler {
+
+	/*
+	 * maximum number of coordinates of a request
+	 */
+	private static final int MAX_COORDINATES = 100_000;
+
+	/*
+	 * maximum size of the body in bytes, about 40 bytes per coordinate "lat,lon;" with all decimals
+	 */
+	static final int MAX_BODY_SIZE = 40 * MAX_COORDINATES;
+
+	//represents graph object
+	Graph graph;
+
+	//runs the calculations on the workers
+	RequestExecutor executor;
+
+	/**
+	 * Constructor of the SnapHandler class
+	 *
+	 * @param graph the graph object
+	 * @param executor the executor which runs the calculations on its workers
+	 */
+	public SnapHandler(Graph graph, RequestExecutor executor) {
+		this.graph = graph;
+		this.executor = executor;
+	}
+
+	@Override
+	public void handle(HttpExchange httpExchange) throws IOException {
+		if (!httpExchange.getRequestMethod().equals("POST")) {
+			httpExchange.getResponseHeaders().set("Allow", "POST");
+			httpExchange.sendResponseHeaders(405, -1);
+			httpExchange.close();
+			return;
+		}
+		byte[] body = readBody(httpExchange);
+
+		int status = 200;
+		String response;
+		if (body == null) {
+			String message = "Snap request too large: more than " + MAX_BODY_SIZE + " bytes";
+			LoggedExchange.setLogDetail(httpExchange, () -> message);
+			byte[] bytes = message.getBytes();
+			httpExchange.getResponseHeaders().set("Content-Type", "text/plain");
+			httpExchange.sendResponseHeaders(413, bytes.length);
+			OutputStream os = httpExchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+			return;
+		}
+		try {
+			String coordinates = new String(body, StandardCharsets.UTF_8);
+			double[][] lonsLats = parseCoordinates(coordinates.trim().replace('\n', ';').replace("\r", ""));
+			if (lonsLats[0].length > MAX_COORDINATES) {
+				throw new IllegalArgumentException("more than " + MAX_COORDINATES + " coordinates");
+			}
+			int[] nodes = executor.compute(() -> graph.getClosestNodes(lonsLats[0], lonsLats[1]));
+
+			StringBuilder builder = new StringBuilder(32 * nodes.length + 32);
+			builder.append("{\"nodes\":");
+			appendNodeIds(builder, graph, nodes);
+			builder.append(",\"coordinates\":[");
+			for (int i = 0; i < nodes.length; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append('[').append(graph.getLatitudeOfNode(nodes[i]))
+						.append(',').append(graph.getLongitudeOfNode(nodes[i])).append(']');
+			}
+			response = builder.append("]}").toString();
+			LoggedExchange.setLogDetail(httpExchange, () -> nodes.length + " coordinates");
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			String message = "Invalid snap request: " + e.getMessage();
+			LoggedExchange.setLogDetail(httpExchange, () -> message);
+			response = message;
+		}
+
+		byte[] bytes = response.getBytes();
+		httpExchange.getResponseHeaders().set("Content-Type", status == 200 ? "application/json" : "text/plain");
+		httpExchange.sendResponseHeaders(status, bytes.length);
+		OutputStream os = httpExchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	/**
+	 * This method reads the body of the request, but no more than MAX_BODY_SIZE bytes
+	 *
+	 * @param httpExchange the request
+	 * @return the body or null if it is larger than MAX_BODY_SIZE
+	 * @throws IOException in case the body can't be read
+	 */
+	private static byte[] readBody(HttpExchange httpExchange) throws IOException {
+		String contentLength = httpExchange.getRequestHeaders().getFirst("Content-Length");
+		try {
+			if (contentLength != null && Long.parseLong(contentLength.trim()) > MAX_BODY_SIZE) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			//the HttpServer rejects invalid lengths, a chunked body has none
+		}
+		//one byte more than allowed tells that the body is too large
+		byte[] body = httpExchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+		return body.length > MAX_BODY_SIZE ? null : body;
+	}
+  }
+
+  /**
+   * This class, which inherits the HttpHandler class, records the latency of every request of an endpoint in the
+   * metrics, the latency of /request per algotype. The latency includes the wait for a worker, requests which
+   * were rejected with 503 are only counted by the RequestExecutor.
+   * The requests are also written to the access log (if there is one) with the detail the handler set (see
+   * LoggedExchange.setLogDetail), it is only built if the request is logged.
+   */
+  static class TimedHandler implements HttpHandler {
+
+	//name of the endpoint
+	String endpoint;
+
+	//the handler which answers the requests
+	HttpHandler handler;
+
+	//represents metrics object
+	Metrics metrics;
+
+	//the access log or null
+	AccessLog accessLog;
+
+	/**
+	 * Constructor of the TimedHandler class
+	 *
+	 * @param endpoint  name of the endpoint
+	 * @param handler   the handler which answers the requests
+	 * @param metrics   the metrics object
+	 * @param accessLog the access log or null if the requests aren't logged
+	 */
+	public TimedHandler(String endpoint, HttpHandler handler, Metrics metrics, AccessLog accessLog) {
+		this.endpoint = endpoint;
+		this.handler = handler;
+		this.metrics = metrics;
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public void handle(HttpExchange httpExchange) throws IOException {
+		long time = System.currentTimeMillis();
+		long start = System.nanoTime();
+		//the attributes of the HttpServer are shared between the exchanges of the context
+		LoggedExchange exchange = new LoggedExchange(httpExchange);
+		try {
+			handler.handle(exchange);
+		} finally {
+			long nanos = System.nanoTime() - start;
+			int status = httpExchange.getResponseCode();
+			if (status != 503) {
+				String algorithm = endpoint.equals("request") ? algorithmOf(httpExchange.getRequestURI().getQuery()) : null;
+				metrics.recordRequest(endpoint, algorithm, nanos);
+			}
+			//failed requests are always logged, -1 if the handler failed before it responded
+			if (accessLog != null && (status < 200 || status >= 400 || accessLog.sample())) {
+				accessLog.log(time, endpoint, status, nanos, httpExchange.getRequestURI().getRawQuery(),
+						exchange.getLogDetail());
+			}
+		}
+	}
+
+	/**
+	 * This method returns the algotype of a request, only known names are returned so every request can't
+	 * create a histogram of its own
+	 *
+	 * @param query the query of the request
+	 * @return the name of the algorithm, "nextNode", "exit" or "unknown"
+	 */
+	private static String algorithmOf(String query) {
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith("algotype=")) {
+					String algoType = param.substring("algotype=".length());
+					RoutingAlgorithm algorithm = RoutingAlgorithm.fromName(algoType);
+					if (algorithm != null) {
+						return algorithm.getName();
+					}
+					if (algoType.equals("nextNode") || algoType.equals("exit")) {
+						return algoType;
+					}
+				}
+			}
+		}
+		return "unknown";
+	}
+  }
+
+  /**
+   * This class, which inherits the HttpHandler class, responds with the metrics of the server in the text format
+   * of Prometheus: the latencies and search efforts (see Metrics), the state of the caches and of the
+   * RequestExecutor.
+   *
+   * example: /metrics
+   */
+  static class MetricsHandler implements HttpHandler {
+
+	//represents metrics object
+	Metrics metrics;
+
+	//represents graph object
+	Graph graph;
+
+	//paths of previous route queries
+	RouteCache routeCache;
+
+	//executes the requests
+	RequestExecutor executor;
+
+	//the access log or null
+	AccessLog accessLog;
+
+	/**
+	 * Constructor of the MetricsHandler class
+	 *
+	 * @param metrics    the metrics object
+	 * @param graph      the graph object
+	 * @param routeCache the cache of the route queries
+	 * @param executor   the executor of the requests
+	 * @param accessLog  the access log or null
+	 */
+	public MetricsHandler(Metrics metrics, Graph graph, RouteCache routeCache, RequestExecutor executor,
+			AccessLog accessLog) {
+		this.metrics = metrics;
+		this.graph = graph;
+		this.routeCache = routeCache;
+		this.executor = executor;
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public void handle(HttpExchange httpExchange) throws IOException {
+		StringBuilder builder = new StringBuilder(1 << 16);
+		metrics.write(builder);
+
+		Metrics.writeHeader(builder, "mapserver_in_flight_requests", "gauge", "Requests which are being answered");
+		for (String endpoint : executor.getEndpoints()) {
+			Metrics.writeSample(builder, "mapserver_in_flight_requests", "endpoint=\"" + endpoint + "\"",
+					executor.getInFlightRequests(endpoint));
+		}
+		Metrics.writeHeader(builder, "mapserver_rejected_requests_total", "counter", "Requests rejected with 503");
+		for (String endpoint : executor.getEndpoints()) {
+			Metrics.writeSample(builder, "mapserver_rejected_requests_total", "endpoint=\"" + endpoint + "\"",
+					executor.getRejectedRequests(endpoint));
+		}
+		Metrics.writeHeader(builder, "mapserver_rejected_connections_total", "counter",
+				"Connections closed because the queue of the dispatcher was full");
+		Metrics.writeSample(builder, "mapserver_rejected_connections_total", "", executor.getRejectedConnections());
+		Metrics.writeHeader(builder, "mapserver_worker_queue_depth", "gauge", "Calculations waiting for a worker");
+		Metrics.writeSample(builder, "mapserver_worker_queue_depth", "", executor.getQueueDepth());
+		Metrics.writeHeader(builder, "mapserver_active_workers", "gauge", "Workers which are calculating");
+		Metrics.writeSample(builder, "mapserver_active_workers", "", executor.getActiveWorkers());
+
+		Metrics.writeHeader(builder, "mapserver_route_cache_hits_total", "counter", "Routes answered from the cache");
+		Metrics.writeSample(builder, "mapserver_route_cache_hits_total", "", routeCache.getHits());
+		Metrics.writeHeader(builder, "mapserver_route_cache_misses_total", "counter", "Routes which weren't cached");
+		Metrics.writeSample(builder, "mapserver_route_cache_misses_total", "", routeCache.getMisses());
+		Metrics.writeHeader(builder, "mapserver_route_cache_evictions_total", "counter", "Routes evicted from the cache");
+		Metrics.writeSample(builder, "mapserver_route_cache_evictions_total", "", routeCache.getEvictions());
+		Metrics.writeHeader(builder, "mapserver_route_cache_hit_ratio", "gauge", "Share of routes answered from the cache");
+		Metrics.writeSample(builder, "mapserver_route_cache_hit_ratio", "", routeCache.getHitRate());
+
+		if (accessLog != null) {
+			Metrics.writeHeader(builder, "mapserver_access_log_dropped_total", "counter",
+					"Entries of the access log dropped because its buffer was full");
+			Metrics.writeSample(builder, "mapserver_access_log_dropped_total", "", accessLog.getDroppedEntries());
+		}
+
+		ShortestPathTreeCache trees = graph.getShortestPathTreeCache();
+		if (trees != null) {
+			Metrics.writeHeader(builder, "routing_tree_cache_hits_total", "counter", "Queries answered by a cached shortest path tree");
+			Metrics.writeSample(builder, "routing_tree_cache_hits_total", "", trees.getHits());
+			Metrics.writeHeader(builder, "routing_tree_cache_misses_total", "counter", "Queries whose source had no cached tree");
+			Metrics.writeSample(builder, "routing_tree_cache_misses_total", "", trees.getMisses());
+			Metrics.writeHeader(builder, "routing_tree_cache_builds_total", "counter", "Calculated shortest path trees");
+			Metrics.writeSample(builder, "routing_tree_cache_builds_total", "", trees.getBuilds());
+			Metrics.writeHeader(builder, "routing_tree_cache_evictions_total", "counter", "Trees evicted to keep the memory budget");
+			Metrics.writeSample(builder, "routing_tree_cache_evictions_total", "", trees.getEvictions());
+			Metrics.writeHeader(builder, "routing_tree_cache_bytes", "gauge", "Memory of the cached trees");
+			Metrics.writeSample(builder, "routing_tree_cache_bytes", "", trees.getUsedMemory());
+			Metrics.writeHeader(builder, "routing_tree_cache_hit_ratio", "gauge", "Share of queries answered by a cached tree");
+			Metrics.writeSample(builder, "routing_tree_cache_hit_ratio", "", trees.getHitRate());
+		}
+
+		byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+		httpExchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		httpExchange.sendResponseHeaders(200, bytes.length);
+		OutputStream os = httpExchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+  }
+
+  /**
+   * This method appends the ids of the nodes in the graph file as JSON array
+   *
+   * @param builder the builder of the response
+   * @param graph   the graph
+   * @param nodes   node indices
+   */
+  static void appendNodeIds(StringBuilder builder, Graph graph, int[] nodes) {
+	builder.append('[');
+	for (int i = 0; i < nodes.length; i++) {
+		if (i > 0) {
+			builder.append(',');
+		}
+		builder.append(graph.getIdOfNode(nodes[i]));
+	}
+	builder.append(']');
+  }
+
+  /**
+   * This method parses a list of coordinates
+   *
+   * @param coordinates coordinates "lat,lon" separated by ";"
+   * @return the longitudes and the latitudes in the order of the list
+   * @throws IllegalArgumentException if a coordinate can't be parsed
+   */
+  static double[][] parseCoordinates(String coordinates) {
+	String[] points = coordinates.split(";");
+	double[] lons = new double[points.length];
+	double[] lats = new double[points.length];
+	for (int i = 0; i < points.length; i++) {
+		String[] latLon = points[i].split(",");
+		if (latLon.length != 2) {
+			throw new IllegalArgumentException("invalid coordinate " + points[i]);
+		}
+		//NumberFormatException is an IllegalArgumentException
+		lats[i] = Double.parseDouble(latLon[0].trim());
+		lons[i] = Double.parseDouble(latLon[1].trim());
+		if (!Double.isFinite(lats[i]) || !Double.isFinite(lons[i])) {
+			throw new IllegalArgumentException("invalid coordinate " + points[i]);
+		}
+	}
+	return new double[][]{lons, lats};
+  }
 }
@@ -0,0 +1,166 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the metrics of the MapServer and writes them in the text format of Prometheus: the latency
+ * of the requests per endpoint and algorithm, the effort of every search (settled nodes, relaxed edges and heap
+ * operations, see PathFinder.recordSearch) and the time of snapping coordinates to nodes with the QuadTree.
+ * <p>
+ * Everything is recorded into histograms and counters of LongAdders (see Histogram), so the threads which answer
+ * requests never wait for each other or for a scrape.
+ */
+public class Metrics {
+
+    /*
+     * latencies are recorded in nanoseconds, from 16 microseconds (2^14) to 34 seconds (2^35)
+     */
+    private static final int MIN_LATENCY_EXPONENT = 14;
+    private static final int MAX_LATENCY_EXPONENT = 35;
+    /*
+     * efforts are recorded from 16 to about 268 million (2^28) nodes or edges per search
+     */
+    private static final int MIN_EFFORT_EXPONENT = 4;
+    private static final int MAX_EFFORT_EXPONENT = 28;
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    /*
+     * latency histogram of each combination of labels, e.g. endpoint="request",algotype="ch"
+     */
+    private final Map<String, Histogram> requestDurations = new ConcurrentHashMap<>();
+
+    private final Histogram settledNodes = new Histogram(MIN_EFFORT_EXPONENT, MAX_EFFORT_EXPONENT);
+    private final Histogram relaxedEdges = new Histogram(MIN_EFFORT_EXPONENT, MAX_EFFORT_EXPONENT);
+    private final Histogram heapOperations = new Histogram(MIN_EFFORT_EXPONENT, MAX_EFFORT_EXPONENT);
+
+    private final Histogram snapDurations = new Histogram(MIN_LATENCY_EXPONENT, MAX_LATENCY_EXPONENT);
+    private final LongAdder snappedCoordinates = new LongAdder();
+
+    /**
+     * This method records the latency of a request
+     *
+     * @param endpoint  the endpoint, e.g. "request"
+     * @param algorithm the algotype of the request or null if the endpoint has none, only a fixed set of names
+     *                  must be used because every name gets its own histogram
+     * @param nanos     the latency in nanoseconds
+     */
+    public void recordRequest(String endpoint, String algorithm, long nanos) {
+        String labels = algorithm == null ? "endpoint=\"" + endpoint + "\""
+                : "endpoint=\"" + endpoint + "\",algotype=\"" + algorithm + "\"";
+        Histogram histogram = requestDurations.get(labels);
+        if (histogram == null) {
+            histogram = requestDurations.computeIfAbsent(labels,
+                    key -> new Histogram(MIN_LATENCY_EXPONENT, MAX_LATENCY_EXPONENT));
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * This method records the effort of a search
+     *
+     * @param settled    number of nodes which were removed from the queues
+     * @param relaxed    number of edges which were relaxed
+     * @param operations number of insertions, decreased keys and removals of the queues
+     */
+    public void recordSearch(long settled, long relaxed, long operations) {
+        settledNodes.record(settled);
+        relaxedEdges.record(relaxed);
+        heapOperations.record(operations);
+    }
+
+    /**
+     * This method records the time of snapping coordinates to their closest nodes
+     *
+     * @param nanos       the time in nanoseconds
+     * @param coordinates number of snapped coordinates
+     */
+    public void recordSnap(long nanos, int coordinates) {
+        snapDurations.record(nanos);
+        snappedCoordinates.add(coordinates);
+    }
+
+    /**
+     * This method writes all recorded metrics
+     *
+     * @param builder the builder of the response
+     */
+    public void write(StringBuilder builder) {
+        writeHeader(builder, "mapserver_request_duration_seconds", "histogram",
+                "Latency of the requests per endpoint and algorithm");
+        for (Map.Entry<String, Histogram> entry : requestDurations.entrySet()) {
+            writeHistogram(builder, "mapserver_request_duration_seconds", entry.getKey(), entry.getValue(),
+                    NANOSECONDS_PER_SECOND);
+        }
+        writeHeader(builder, "routing_settled_nodes", "histogram", "Nodes settled per search");
+        writeHistogram(builder, "routing_settled_nodes", "", settledNodes, 1);
+        writeHeader(builder, "routing_relaxed_edges", "histogram", "Edges relaxed per search");
+        writeHistogram(builder, "routing_relaxed_edges", "", relaxedEdges, 1);
+        writeHeader(builder, "routing_heap_operations", "histogram",
+                "Insertions, decreased keys and removals of the priority queues per search");
+        writeHistogram(builder, "routing_heap_operations", "", heapOperations, 1);
+        writeHeader(builder, "routing_snap_duration_seconds", "histogram",
+                "Time of snapping coordinates to their closest nodes per call");
+        writeHistogram(builder, "routing_snap_duration_seconds", "", snapDurations, NANOSECONDS_PER_SECOND);
+        writeHeader(builder, "routing_snapped_coordinates_total", "counter",
+                "Coordinates snapped to their closest nodes");
+        writeSample(builder, "routing_snapped_coordinates_total", "", snappedCoordinates.sum());
+    }
+
+    /**
+     * This method writes the help and type line of a metric
+     *
+     * @param builder the builder of the response
+     * @param name    name of the metric
+     * @param type    counter, gauge or histogram
+     * @param help    description of the metric
+     */
+    static void writeHeader(StringBuilder builder, String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * This method writes one value of a metric
+     *
+     * @param builder the builder of the response
+     * @param name    name of the metric
+     * @param labels  the labels without braces, empty if the metric has none
+     * @param value   the value
+     */
+    static void writeSample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+        builder.append('\n');
+    }
+
+    /**
+     * This method writes a histogram as cumulative buckets, sum and count
+     *
+     * @param builder   the builder of the response
+     * @param name      name of the metric
+     * @param labels    the labels without braces, empty if the metric has none
+     * @param histogram the histogram
+     * @param divisor   unit of the recorded values in the unit of the metric, e.g. 1e9 for nanoseconds in seconds
+     */
+    private static void writeHistogram(StringBuilder builder, String name, String labels, Histogram histogram,
+                                       double divisor) {
+        long[] counts = histogram.getCounts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i == counts.length - 1 ? "+Inf" : String.valueOf(histogram.getUpperBound(i) / divisor);
+            writeSample(builder, name + "_bucket", prefix + "le=\"" + bound + "\"", cumulative);
+        }
+        writeSample(builder, name + "_sum", labels, histogram.getSum() / divisor);
+        writeSample(builder, name + "_count", labels, cumulative);
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * This enum represents the orders in which the nodes of a graph can be numbered internally. Nodes which are
+ * next to each other in the graph get close indices, so the arrays of the searches are accessed with fewer
+ * cache misses. The node ids of the graph file stay the ids of the nodes outside of the graph
+ * (see Graph.getIndexOfNodeId and Graph.getIdOfNode).
+ * The name of each order is used as -order argument by the Benchmark and the MapServer.
+ */
+public enum NodeOrder {
+
+    /*
+     * the order of the graph file
+     */
+    INPUT("input"),
+    /*
+     * the order along a Hilbert curve over the coordinates of the nodes (see QuadTree)
+     */
+    HILBERT("hilbert"),
+    /*
+     * the order in which a breadth-first search on the outgoing edges reaches the nodes
+     */
+    BFS("bfs");
+
+    private final String name;
+
+    NodeOrder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * This method returns the order with the given name
+     *
+     * @param name name of the order
+     * @return the order or null if there is no order with this name
+     */
+    public static NodeOrder fromName(String name) {
+        for (NodeOrder order : values()) {
+            if (order.name.equals(name)) {
+                return order;
+            }
+        }
+        return null;
+    }
+}
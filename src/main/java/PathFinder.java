@@ -1,9 +1,16 @@
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.PriorityQueue;
+import java.util.List;
 
 /**
  * This class represents an object which solves different path problems of the specific Graph.
+ * <p>
+ * All arrays are allocated once and reused by every search. A node's entries are only valid if its
+ * stamp equals the generation of the current search, so starting a new search doesn't have to reset
+ * the arrays and a query only costs time for the nodes it touches.
+ * <p>
+ * Because of this state a PathFinder must only be used by one thread at a time,
+ * concurrent queries borrow their own PathFinder from the {@link PathFinderPool} of the graph.
  */
 public class PathFinder {
     /*
@@ -15,33 +22,94 @@ public class PathFinder {
      */
     private final int numberOfNodes;
     /*
-     * An array which stores all distances from the starting Point
-     * to all nodes after the calculation
+     * generation of the current search
      */
-    private int[] nodeDistance;
+    private int generation;
     /*
-     * An array which remembers if the node was already visited or not
+     * state of the search from the starting point, only allocated when the first forward search is started, a
+     * PathFinder which only searches the reverse graph (see reverseOneToAllDijkstra) never needs it
      */
-    private boolean[] visited;
+    private SearchSpace forward;
+    /*
+     * state of the search from the end point on the reverse graph, only allocated
+     * when the first bidirectional query is solved
+     */
+    private SearchSpace backward;
+    /*
+     * node in which the forward and backward search met on the shortest path (bidirectional search only)
+     */
+    private int meetingNode;
+    /*
+     * lower bound of the remaining distance of each node reached by the current A* search,
+     * only allocated when the first A* query is solved
+     */
+    private int[] estimate;
+    /*
+     * coordinates of the end point and cost per meter of the current A* search
+     */
+    private double targetLatitude;
+    private double targetLongitude;
+    private double costPerMeter;
+    /*
+     * end point of the current A* or ALT search
+     */
+    private int targetIDX;
+    /*
+     * landmarks of the current ALT search (null for A*) and the indices of the landmarks which are used
+     */
+    private Landmarks landmarks;
+    private final int[] activeLandmarks = new int[Landmarks.ACTIVE_COUNT];
+    private int activeLandmarkCount;
+    /*
+     * nodes of the path which is unpacked from the Contraction Hierarchy and their number, the buffer is reused
+     * by every query
+     */
+    private int[] pathBuffer = new int[1024];
+    private int pathLength;
+    /*
+     * effort of the current search: the relaxed edges and the counters of both queues at its start. It is
+     * recorded in the metrics of the graph after the search (see recordSearch).
+     */
+    private boolean searching;
+    private long relaxedEdges;
+    private long pollsAtStart;
+    private long heapOperationsAtStart;
 
     /**
      * Constructor method of the PathFinder class.
      *
      * @param graph specific graph
      */
-    
-    private int[] previousNode;
-    
     public PathFinder(Graph graph) {
         this.graph = graph;
         this.numberOfNodes = graph.getNumberOfNodes();
-        this.previousNode = new int[numberOfNodes];
-        for(int i = 0; i<numberOfNodes; i++) {
-        	previousNode[i] = i;
-        }
     }
 
 
+    /**
+     * This method solves a one to one query with the given algorithm
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @param algorithm       the algorithm which solves the query
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    public int oneToOne(int startingPointID, int endPointID, RoutingAlgorithm algorithm) {
+        switch (algorithm) {
+            case BIDIRECTIONAL_DIJKSTRA:
+                return bidirectionalDijkstra(startingPointID, endPointID);
+            case A_STAR:
+                return aStar(startingPointID, endPointID);
+            case ALT:
+                return alt(startingPointID, endPointID);
+            case CONTRACTION_HIERARCHY:
+                return contractionHierarchyQuery(startingPointID, endPointID);
+            case DIJKSTRA:
+            default:
+                return oneToOneDijkstra(startingPointID, endPointID);
+        }
+    }
+
     /**
      * This method represents the One To One Dijkstra algorithm
      *
@@ -50,53 +118,334 @@ public class PathFinder {
      * @return the return value of the Dijkstra algortihm
      */
     public int oneToOneDijkstra(int startingPointID, int endPointID) {
+        startSearch();
+        forward.reach(startingPointID, 0, startingPointID);
 
-        //A prority queue which sorts the nodes by their node distances
-        PriorityQueue<int[]> pq = new PriorityQueue<>((v1, v2) -> v1[1] - v2[1]);
-        //displays actual distance of the specific node
-        nodeDistance = new int[numberOfNodes];
-        //shows if the node was already visited
-        visited = new boolean[numberOfNodes];
-        
-       
-        for (int i = 0; i < numberOfNodes; i++) {
-            nodeDistance[i] = Integer.MAX_VALUE;
-            previousNode[i] = i;
+        while (!forward.queue.isEmpty()) {
+            //Remove node with lowest nodeDistance from queue
+            int node = forward.queue.poll();
+            if (node == endPointID) {
+                return forward.distance[endPointID];
+            }
+
+            /*
+             * Add successor into priority queue and Update Node values.
+             */
+            update(node);
         }
 
-        nodeDistance[startingPointID] = 0;
-        previousNode[startingPointID] = startingPointID;
-        int[] startingPoint = {startingPointID, nodeDistance[startingPointID]};
-        pq.add(startingPoint);
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * This method represents the A* algorithm. The queue sorts the nodes by their distance plus a lower bound
+     * of the remaining distance to the end point (great-circle distance multiplied by the smallest cost per
+     * meter of the graph). The lower bound is consistent, so every node is visited at most once.
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    public int aStar(int startingPointID, int endPointID) {
+        targetLatitude = graph.getLatitudeOfNode(endPointID);
+        targetLongitude = graph.getLongitudeOfNode(endPointID);
+        costPerMeter = graph.getCostPerMeter();
+        landmarks = null;
+        return goalDirectedSearch(startingPointID, endPointID);
+    }
 
-        while (!pq.isEmpty()) {
+    /**
+     * This method represents the ALT algorithm, an A* search whose lower bounds are calculated from the distances
+     * to and from the landmarks of the graph with the triangle inequality. Only the landmarks which give the best
+     * lower bound for the starting point are used.
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    public int alt(int startingPointID, int endPointID) {
+        landmarks = graph.getLandmarks();
+        activeLandmarkCount = landmarks.selectActive(startingPointID, endPointID, activeLandmarks);
+        return goalDirectedSearch(startingPointID, endPointID);
+    }
 
-            if (visited[endPointID] == true) {
-                return nodeDistance[endPointID];
+    /**
+     * This method represents the A* search which is shared by A* and ALT. The queue sorts the nodes by their
+     * distance plus the lower bound of estimateDistance. A node whose distance decreases after it was visited is
+     * visited again, so the result stays exact even if a lower bound isn't consistent.
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    private int goalDirectedSearch(int startingPointID, int endPointID) {
+        if (estimate == null) {
+            estimate = new int[numberOfNodes];
+        }
+        startSearch();
+        targetIDX = endPointID;
+
+        estimate[startingPointID] = estimateDistance(startingPointID);
+        forward.reach(startingPointID, 0, startingPointID, estimate[startingPointID]);
+
+        while (!forward.queue.isEmpty()) {
+            int srcIDX = forward.queue.poll();
+            if (srcIDX == endPointID) {
+                return forward.distance[endPointID];
             }
 
-            //Remove predecessor node with lowest nodeDistance from queue
-            int[] predecessor = pq.poll();
+            int srcDistance = forward.distance[srcIDX];
+            relaxedEdges += graph.getOffsetOfNode(srcIDX + 1) - graph.getOffsetOfNode(srcIDX);
+            for (int i = graph.getOffsetOfNode(srcIDX); i < graph.getOffsetOfNode(srcIDX + 1); i++) {
+                int trgIDX = graph.getTrgIDXofEdge(i);
+                int distance = srcDistance + graph.getWeightOfEdge(i);
+                if (!forward.isReached(trgIDX)) {
+                    //the estimate is calculated once per node and search
+                    estimate[trgIDX] = estimateDistance(trgIDX);
+                    forward.reach(trgIDX, distance, srcIDX, distance + estimate[trgIDX]);
+                } else if (distance < forward.distance[trgIDX]) {
+                    forward.reach(trgIDX, distance, srcIDX, distance + estimate[trgIDX]);
+                }
+            }
+        }
 
-            if (!visited[predecessor[0]]) {
+        return Integer.MAX_VALUE;
+    }
 
-                /*
-                 * Add successor into priority queue and Update Node values.
-                 */
-                update(predecessor, pq);
+    /**
+     * This method calculates the lower bound of the distance from the node to the end point of the current A* or ALT search
+     *
+     * @param node node index
+     * @return a value which is never larger than the value of the shortest path from the node to the end point
+     */
+    private int estimateDistance(int node) {
+        if (landmarks != null) {
+            return landmarks.lowerBound(node, targetIDX, activeLandmarks, activeLandmarkCount);
+        }
+        double meters = GeoDistance.haversine(graph.getLatitudeOfNode(node), graph.getLongitudeOfNode(node),
+                targetLatitude, targetLongitude);
+        return (int) (meters * costPerMeter);
+    }
+
+    /**
+     * This method represents the bidirectional Dijkstra algorithm. One search runs from the starting point,
+     * the other one runs on the reverse graph from the end point, and always the search with the smaller
+     * queue minimum does the next step. The searches stop as soon as the sum of both queue minimums
+     * can't improve the shortest path found so far.
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    public int bidirectionalDijkstra(int startingPointID, int endPointID) {
+        if (backward == null) {
+            backward = new SearchSpace();
+        }
+        startSearch();
+        forward.reach(startingPointID, 0, startingPointID);
+        backward.reach(endPointID, 0, endPointID);
+        meetingNode = startingPointID == endPointID ? startingPointID : -1;
+        //an empty queue has the minimum Integer.MAX_VALUE, so the searches stop if one of them can't reach more nodes
+        long shortestPath = startingPointID == endPointID ? 0 : Integer.MAX_VALUE;
 
+        while (true) {
+            long forwardMin = forward.queue.isEmpty() ? Integer.MAX_VALUE : forward.queue.peekKey();
+            long backwardMin = backward.queue.isEmpty() ? Integer.MAX_VALUE : backward.queue.peekKey();
+            if (forwardMin + backwardMin >= shortestPath) {
+                break;
+            }
 
+            if (forwardMin <= backwardMin) {
+                int srcIDX = forward.queue.poll();
+                int srcDistance = forward.distance[srcIDX];
+                relaxedEdges += graph.getOffsetOfNode(srcIDX + 1) - graph.getOffsetOfNode(srcIDX);
+                for (int i = graph.getOffsetOfNode(srcIDX); i < graph.getOffsetOfNode(srcIDX + 1); i++) {
+                    int trgIDX = graph.getTrgIDXofEdge(i);
+                    int distance = srcDistance + graph.getWeightOfEdge(i);
+                    if (!forward.isReached(trgIDX) || distance < forward.distance[trgIDX]) {
+                        forward.reach(trgIDX, distance, srcIDX);
+                        //the backward search already knows a path from here to the end point
+                        if (backward.isReached(trgIDX) && distance + (long) backward.distance[trgIDX] < shortestPath) {
+                            shortestPath = distance + (long) backward.distance[trgIDX];
+                            meetingNode = trgIDX;
+                        }
+                    }
+                }
+            } else {
+                int trgIDX = backward.queue.poll();
+                int trgDistance = backward.distance[trgIDX];
+                relaxedEdges += graph.getReverseOffsetOfNode(trgIDX + 1) - graph.getReverseOffsetOfNode(trgIDX);
+                for (int i = graph.getReverseOffsetOfNode(trgIDX); i < graph.getReverseOffsetOfNode(trgIDX + 1); i++) {
+                    int srcIDX = graph.getSrcIDXofReverseEdge(i);
+                    int distance = trgDistance + graph.getWeightOfReverseEdge(i);
+                    if (!backward.isReached(srcIDX) || distance < backward.distance[srcIDX]) {
+                        backward.reach(srcIDX, distance, trgIDX);
+                        //the forward search already knows a path from the starting point to here
+                        if (forward.isReached(srcIDX) && distance + (long) forward.distance[srcIDX] < shortestPath) {
+                            shortestPath = distance + (long) forward.distance[srcIDX];
+                            meetingNode = srcIDX;
+                        }
+                    }
+                }
             }
         }
 
-        if (visited[endPointID] == true) {
-            return nodeDistance[endPointID];
-        } else {
-            System.out.println("route doesn't exist");
+        if (shortestPath >= Integer.MAX_VALUE) {
+            meetingNode = -1;
+            return Integer.MAX_VALUE;
+        }
+        return (int) shortestPath;
+    }
+
+    /**
+     * This method answers a query with the Contraction Hierarchy of the graph. The forward search only uses
+     * upward edges, the backward search only uses downward edges, so both searches meet in the node with the
+     * highest rank on the shortest path. A node is not expanded if a node with a higher rank already proves
+     * a shorter distance to it (stall-on-demand).
+     *
+     * @param startingPointID source index
+     * @param endPointID      target index
+     * @return the value of the shortest path or Integer.MAX_VALUE if there is no path
+     */
+    public int contractionHierarchyQuery(int startingPointID, int endPointID) {
+        ContractionHierarchy hierarchy = graph.getContractionHierarchy();
+        if (backward == null) {
+            backward = new SearchSpace();
+        }
+        startSearch();
+        forward.reach(startingPointID, 0, startingPointID);
+        backward.reach(endPointID, 0, endPointID);
+        meetingNode = -1;
+        long shortestPath = Integer.MAX_VALUE;
+
+        while (true) {
+            long forwardMin = forward.queue.isEmpty() ? Integer.MAX_VALUE : forward.queue.peekKey();
+            long backwardMin = backward.queue.isEmpty() ? Integer.MAX_VALUE : backward.queue.peekKey();
+            //upward searches don't reach their nodes in the order of the path, so both have to pass the shortest path
+            if (Math.min(forwardMin, backwardMin) >= shortestPath) {
+                break;
+            }
+
+            if (forwardMin <= backwardMin) {
+                int srcIDX = forward.queue.poll();
+                int srcDistance = forward.distance[srcIDX];
+                if (backward.isReached(srcIDX) && srcDistance + (long) backward.distance[srcIDX] < shortestPath) {
+                    shortestPath = srcDistance + (long) backward.distance[srcIDX];
+                    meetingNode = srcIDX;
+                }
+                if (isStalled(hierarchy, forward, srcIDX, false)) {
+                    continue;
+                }
+                relaxedEdges += hierarchy.getUpOffsetOfNode(srcIDX + 1) - hierarchy.getUpOffsetOfNode(srcIDX);
+                for (int i = hierarchy.getUpOffsetOfNode(srcIDX); i < hierarchy.getUpOffsetOfNode(srcIDX + 1); i++) {
+                    int trgIDX = hierarchy.getTrgIDXofUpEdge(i);
+                    int distance = srcDistance + hierarchy.getWeightOfUpEdge(i);
+                    if (!forward.isReached(trgIDX) || distance < forward.distance[trgIDX]) {
+                        forward.reach(trgIDX, distance, srcIDX);
+                    }
+                }
+            } else {
+                int trgIDX = backward.queue.poll();
+                int trgDistance = backward.distance[trgIDX];
+                if (forward.isReached(trgIDX) && trgDistance + (long) forward.distance[trgIDX] < shortestPath) {
+                    shortestPath = trgDistance + (long) forward.distance[trgIDX];
+                    meetingNode = trgIDX;
+                }
+                if (isStalled(hierarchy, backward, trgIDX, true)) {
+                    continue;
+                }
+                relaxedEdges += hierarchy.getDownOffsetOfNode(trgIDX + 1) - hierarchy.getDownOffsetOfNode(trgIDX);
+                for (int i = hierarchy.getDownOffsetOfNode(trgIDX); i < hierarchy.getDownOffsetOfNode(trgIDX + 1); i++) {
+                    int srcIDX = hierarchy.getSrcIDXofDownEdge(i);
+                    int distance = trgDistance + hierarchy.getWeightOfDownEdge(i);
+                    if (!backward.isReached(srcIDX) || distance < backward.distance[srcIDX]) {
+                        backward.reach(srcIDX, distance, trgIDX);
+                    }
+                }
+            }
+        }
+
+        if (shortestPath >= Integer.MAX_VALUE) {
+            meetingNode = -1;
             return Integer.MAX_VALUE;
-            
         }
+        return (int) shortestPath;
+    }
 
+    /**
+     * This method runs a complete upward search in the Contraction Hierarchy of the graph, which is one half of
+     * a Contraction Hierarchy query. Many-to-many queries combine the search spaces of all sources and targets.
+     *
+     * @param nodeIDX    start node of the search
+     * @param isBackward true for a search on the downward edges (from a target), false for the upward edges
+     * @return pairs of node and distance of all visited nodes
+     */
+    public int[] upwardSearchSpace(int nodeIDX, boolean isBackward) {
+        ContractionHierarchy hierarchy = graph.getContractionHierarchy();
+        if (backward == null) {
+            backward = new SearchSpace();
+        }
+        startSearch();
+        SearchSpace searchSpace = isBackward ? backward : forward;
+        searchSpace.reach(nodeIDX, 0, nodeIDX);
+
+        int[] visited = new int[64];
+        int count = 0;
+        while (!searchSpace.queue.isEmpty()) {
+            int node = searchSpace.queue.poll();
+            int nodeDistance = searchSpace.distance[node];
+            if (2 * count == visited.length) {
+                visited = Arrays.copyOf(visited, 2 * visited.length);
+            }
+            visited[2 * count] = node;
+            visited[2 * count + 1] = nodeDistance;
+            count++;
+
+            int end = isBackward ? hierarchy.getDownOffsetOfNode(node + 1) : hierarchy.getUpOffsetOfNode(node + 1);
+            int first = isBackward ? hierarchy.getDownOffsetOfNode(node) : hierarchy.getUpOffsetOfNode(node);
+            relaxedEdges += end - first;
+            for (int i = first; i < end; i++) {
+                int nextNode = isBackward ? hierarchy.getSrcIDXofDownEdge(i) : hierarchy.getTrgIDXofUpEdge(i);
+                int distance = nodeDistance + (isBackward ? hierarchy.getWeightOfDownEdge(i) : hierarchy.getWeightOfUpEdge(i));
+                if (!searchSpace.isReached(nextNode) || distance < searchSpace.distance[nextNode]) {
+                    searchSpace.reach(nextNode, distance, node);
+                }
+            }
+        }
+        return Arrays.copyOf(visited, 2 * count);
+    }
+
+    /**
+     * This method tells if a node of a Contraction Hierarchy search can be reached with a shorter distance over a
+     * node with a higher rank which the search already reached. The edges from these nodes are exactly the edges
+     * the search can't use: the downward edges for the forward search and the upward edges for the backward search.
+     *
+     * @param hierarchy   the Contraction Hierarchy
+     * @param searchSpace the search
+     * @param node        the visited node
+     * @param isBackward  true for the backward search
+     * @return true if the node doesn't have to be expanded
+     */
+    private boolean isStalled(ContractionHierarchy hierarchy, SearchSpace searchSpace, int node, boolean isBackward) {
+        int nodeDistance = searchSpace.distance[node];
+        if (isBackward) {
+            for (int i = hierarchy.getUpOffsetOfNode(node); i < hierarchy.getUpOffsetOfNode(node + 1); i++) {
+                int higherNode = hierarchy.getTrgIDXofUpEdge(i);
+                if (searchSpace.isReached(higherNode)
+                        && searchSpace.distance[higherNode] + hierarchy.getWeightOfUpEdge(i) < nodeDistance) {
+                    return true;
+                }
+            }
+        } else {
+            for (int i = hierarchy.getDownOffsetOfNode(node); i < hierarchy.getDownOffsetOfNode(node + 1); i++) {
+                int higherNode = hierarchy.getSrcIDXofDownEdge(i);
+                if (searchSpace.isReached(higherNode)
+                        && searchSpace.distance[higherNode] + hierarchy.getWeightOfDownEdge(i) < nodeDistance) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -108,120 +457,386 @@ public class PathFinder {
      * point to all other nodes
      */
     public int[] oneToAllDijkstra(int startingPointID) {
+        startSearch();
+        forward.reach(startingPointID, 0, startingPointID);
 
-        //A prority queue which sorts the nodes by their node distances
-        PriorityQueue<int[]> pq = new PriorityQueue<>((v1, v2) -> v1[1] - v2[1]);
-        //displays actual distance of the specific node
-        nodeDistance = new int[numberOfNodes];
-        //shows if the node was already visited
-        visited = new boolean[numberOfNodes];
+        while (!forward.queue.isEmpty()) {
+            update(forward.queue.poll());
+        }
 
+        int[] distances = new int[numberOfNodes];
         for (int i = 0; i < numberOfNodes; i++) {
-            nodeDistance[i] = Integer.MAX_VALUE;
-            previousNode[i] = i;
+            distances[i] = forward.isReached(i) ? forward.distance[i] : Integer.MAX_VALUE;
         }
+        return distances;
+    }
 
-        nodeDistance[startingPointID] = 0;
-        int[] startingPoint = {startingPointID, nodeDistance[startingPointID]};
-        pq.add(startingPoint);
+    /**
+     * This method calculates the shortest path tree of the starting point with the One to All Dijkstra algorithm:
+     * the distances and the predecessors of all nodes
+     *
+     * @param startingPointID start index
+     * @param offHeap         true if the tree is stored off-heap
+     * @return the shortest path tree
+     */
+    public ShortestPathTree shortestPathTree(int startingPointID, boolean offHeap) {
+        startSearch();
+        forward.reach(startingPointID, 0, startingPointID);
 
-        while (!pq.isEmpty()) {
+        while (!forward.queue.isEmpty()) {
+            update(forward.queue.poll());
+        }
 
-            //Remove predecessor node with lowest nodeDistance from queue
-            int[] predecessor = pq.poll();
+        ShortestPathTree tree = new ShortestPathTree(startingPointID, numberOfNodes, offHeap);
+        for (int i = 0; i < numberOfNodes; i++) {
+            if (forward.isReached(i)) {
+                tree.set(i, forward.distance[i], forward.previous[i]);
+            } else {
+                tree.set(i, Integer.MAX_VALUE, -1);
+            }
+        }
+        return tree;
+    }
 
-            if (!visited[predecessor[0]]) {
+    /**
+     * This method represents the One to All Dijkstra algorithm on the reverse graph, which calculates the
+     * distances from all nodes to the end point
+     *
+     * @param endPointID target index
+     * @return An array which contains the distances from all nodes to the end point
+     */
+    public int[] reverseOneToAllDijkstra(int endPointID) {
+        if (backward == null) {
+            backward = new SearchSpace();
+        }
+        startSearchGeneration();
+        backward.reach(endPointID, 0, endPointID);
+
+        while (!backward.queue.isEmpty()) {
+            int trgIDX = backward.queue.poll();
+            int trgDistance = backward.distance[trgIDX];
+            relaxedEdges += graph.getReverseOffsetOfNode(trgIDX + 1) - graph.getReverseOffsetOfNode(trgIDX);
+            for (int i = graph.getReverseOffsetOfNode(trgIDX); i < graph.getReverseOffsetOfNode(trgIDX + 1); i++) {
+                int srcIDX = graph.getSrcIDXofReverseEdge(i);
+                int distance = trgDistance + graph.getWeightOfReverseEdge(i);
+                if (!backward.isReached(srcIDX) || distance < backward.distance[srcIDX]) {
+                    backward.reach(srcIDX, distance, trgIDX);
+                }
+            }
+        }
+
+        int[] distances = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            distances[i] = backward.isReached(i) ? backward.distance[i] : Integer.MAX_VALUE;
+        }
+        return distances;
+    }
 
-                /*
-                 * Add successor into priority queue and Update Node values.
-                 */
-                update(predecessor, pq);
-                visited[predecessor[0]] = true;
+    /**
+     * This method starts a new search generation from the starting point, which invalidates the entries of all
+     * nodes
+     */
+    private void startSearch() {
+        if (forward == null) {
+            forward = new SearchSpace();
+        }
+        startSearchGeneration();
+    }
 
+    /**
+     * This method starts a new search generation, which invalidates the entries of all nodes
+     */
+    private void startSearchGeneration() {
+        recordSearch();
+        if (forward != null) {
+            forward.queue.clear();
+        }
+        if (backward != null) {
+            backward.queue.clear();
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            //stamps of old generations could be mistaken for the new one after an overflow
+            if (forward != null) {
+                Arrays.fill(forward.stamp, 0);
+            }
+            if (backward != null) {
+                Arrays.fill(backward.stamp, 0);
             }
+            generation = 1;
         }
+        searching = true;
+        relaxedEdges = 0;
+        pollsAtStart = polls();
+        heapOperationsAtStart = heapOperations();
+    }
 
-        return nodeDistance;
+    /**
+     * This method records the effort of the last search in the metrics of the graph (if it has metrics): the
+     * settled nodes, the relaxed edges and the operations of the queues. It's called when the next search starts
+     * and when the PathFinder is returned to its pool, so the search itself only increments plain counters.
+     */
+    void recordSearch() {
+        if (!searching) {
+            return;
+        }
+        searching = false;
+        Metrics metrics = graph.getMetrics();
+        if (metrics != null) {
+            metrics.recordSearch(polls() - pollsAtStart, relaxedEdges, heapOperations() - heapOperationsAtStart);
+        }
+    }
+
+    private long polls() {
+        return (forward == null ? 0 : forward.queue.getPolls()) + (backward == null ? 0 : backward.queue.getPolls());
+    }
+
+    private long heapOperations() {
+        return (forward == null ? 0 : forward.queue.getOperations())
+                + (backward == null ? 0 : backward.queue.getOperations());
     }
 
     /**
-     * Updates the nodes which are connected to the predecessor and adds them to the queue
+     * Updates the nodes which are connected to the visited node and adds them to the queue
      * in case it's not visited.
      *
-     * @param predecessor the source node and distance value
-     * @param pq          the given priority queue
+     * @param srcIDX the visited node
      */
-    private void update(int[] predecessor, PriorityQueue<int[]> pq) {
-
-        visited[predecessor[0]] = true;
-        int firstEdgeIDX = graph.getOffsetOfNode(predecessor[0]);
-        int numberOfOutgoingEdges = graph.getOffsetOfNode(predecessor[0] + 1);
+    private void update(int srcIDX) {
+        int firstEdgeIDX = graph.getOffsetOfNode(srcIDX);
+        int numberOfOutgoingEdges = graph.getOffsetOfNode(srcIDX + 1);
+        int srcDistance = forward.distance[srcIDX];
 
+        relaxedEdges += numberOfOutgoingEdges - firstEdgeIDX;
         for (int i = firstEdgeIDX; i < numberOfOutgoingEdges; i++) {
+            int trgIDX = graph.getTrgIDXofEdge(i);
+            int distance = srcDistance + graph.getWeightOfEdge(i);
 
-            //checks whether the weight of the successors should be updated or not
-            if (!visited[graph.getTrgIDXofEdge(i)]) {
-                if (nodeDistance[predecessor[0]] + graph.getWeightOfEdge(i) < nodeDistance[graph.getTrgIDXofEdge(i)]) {
-                    nodeDistance[graph.getTrgIDXofEdge(i)] = nodeDistance[predecessor[0]] + graph.getWeightOfEdge(i);
-                    int[] arr = {graph.getTrgIDXofEdge(i), nodeDistance[graph.getTrgIDXofEdge(i)]};
-                    pq.add(arr);
-                    previousNode[graph.getTrgIDXofEdge(i)] = graph.getSrcIDXofEdge(i);
-                }
+            //visited nodes already have a smaller or equal distance, so only the first check is necessary
+            if (!forward.isReached(trgIDX) || distance < forward.distance[trgIDX]) {
+                forward.reach(trgIDX, distance, srcIDX);
             }
         }
     }
-    
-    
+
+
+    /**
+     * Calculates and returns the nodes which are in the shortest path between two nodes in the exact order.
+     *
+     * @param startingPointID start id
+     * @param endPointID target id
+     * @return The nodes which are in the shortest path of two nodes (start last, target id first), empty if there is no path.
+     */
+    public int[] pathFromAToB(int startingPointID, int endPointID) {
+        return pathFromAToB(startingPointID, endPointID, RoutingAlgorithm.DIJKSTRA);
+    }
+
     /**
-     * Calculates and returns a list of nodes which are in the shortest path between two nodes in the exact order.
-     * 
+     * Calculates and returns the nodes which are in the shortest path between two nodes in the exact order.
+     * The number of nodes is counted along the predecessors first, so the array is allocated once with its final size.
+     *
      * @param startingPointID start id
      * @param endPointID target id
-     * @return A list of nodes which are in the shortest path of two nodes (start last, target id first).
+     * @param algorithm the algorithm which solves the query
+     * @return The nodes which are in the shortest path of two nodes (start last, target id first), empty if there is no path.
      */
-    public LinkedList<Integer> pathFromAToB(int startingPointID, int endPointID) {
-    	int distance = this.oneToOneDijkstra(startingPointID, endPointID);
-    	LinkedList<Integer> nodeList = new LinkedList();
-    	int currentNode = endPointID;
+    public int[] pathFromAToB(int startingPointID, int endPointID, RoutingAlgorithm algorithm) {
+    	int distance = this.oneToOne(startingPointID, endPointID, algorithm);
     	if(distance == Integer.MAX_VALUE){
-    		return nodeList;
+    		return new int[0];
+    	}
+
+    	if (algorithm == RoutingAlgorithm.CONTRACTION_HIERARCHY) {
+    		return unpackPath(startingPointID, endPointID);
+    	}
+
+    	//a bidirectional search met in the meeting node, the backward search stores the successors up to the end point
+    	int middleNode = algorithm == RoutingAlgorithm.BIDIRECTIONAL_DIJKSTRA ? meetingNode : endPointID;
+    	int backwardLength = 0;
+    	for (int currentNode = middleNode; currentNode != endPointID; currentNode = backward.previous[currentNode]) {
+    		backwardLength++;
+    	}
+    	int length = backwardLength + 1;
+    	for (int currentNode = middleNode; currentNode != startingPointID; currentNode = forward.previous[currentNode]) {
+    		length++;
+    	}
+
+    	int[] path = new int[length];
+    	int currentNode = middleNode;
+    	for (int i = backwardLength - 1; i >= 0; i--) {
+    		currentNode = backward.previous[currentNode];
+    		path[i] = currentNode;
+    	}
+    	currentNode = middleNode;
+    	for (int i = backwardLength; i < length; i++) {
+    		path[i] = currentNode;
+    		currentNode = forward.previous[currentNode];
+    	}
+    	return path;
+    }
+
+
+    /**
+     * This method builds the path of the last Contraction Hierarchy query. The path in the hierarchy runs from the
+     * starting point up to the meeting node and down to the end point, each of its edges is unpacked into the
+     * original edges. The unpacked nodes are collected in the reused path buffer.
+     *
+     * @param startingPointID start id
+     * @param endPointID target id
+     * @return The nodes which are in the shortest path of two nodes (start last, target id first).
+     */
+    private int[] unpackPath(int startingPointID, int endPointID) {
+    	int upLength = 0;
+    	for (int currentNode = meetingNode; currentNode != startingPointID; currentNode = forward.previous[currentNode]) {
+    		upLength++;
+    	}
+    	int downLength = 0;
+    	for (int currentNode = meetingNode; currentNode != endPointID; currentNode = backward.previous[currentNode]) {
+    		downLength++;
+    	}
+    	int[] hierarchyPath = new int[upLength + downLength + 1];
+    	int currentNode = meetingNode;
+    	for (int i = upLength; i > 0; i--) {
+    		hierarchyPath[i] = currentNode;
+    		currentNode = forward.previous[currentNode];
+    	}
+    	hierarchyPath[0] = startingPointID;
+    	currentNode = meetingNode;
+    	for (int i = upLength + 1; i < hierarchyPath.length; i++) {
+    		currentNode = backward.previous[currentNode];
+    		hierarchyPath[i] = currentNode;
+    	}
+
+    	ContractionHierarchy hierarchy = graph.getContractionHierarchy();
+    	pathLength = 0;
+    	appendToPath(startingPointID);
+    	for (int i = 1; i < hierarchyPath.length; i++) {
+    		hierarchy.unpackEdge(hierarchyPath[i - 1], hierarchyPath[i], this::appendToPath);
+    	}
+
+    	//the nodes were unpacked from the starting point to the end point
+    	int[] path = new int[pathLength];
+    	for (int i = 0; i < pathLength; i++) {
+    		path[i] = pathBuffer[pathLength - 1 - i];
     	}
-    	
-    	
-    	while(currentNode != startingPointID) {
-    		nodeList.add(currentNode);
-    		currentNode = previousNode[currentNode];
+    	return path;
+    }
+
+    /**
+     * This method appends a node to the path buffer, the buffer grows if it is full
+     *
+     * @param node node index
+     */
+    private void appendToPath(int node) {
+    	if (pathLength == pathBuffer.length) {
+    		pathBuffer = Arrays.copyOf(pathBuffer, 2 * pathBuffer.length);
     	}
-    	nodeList.add(startingPointID);
-    	
-    	return nodeList;
+    	pathBuffer[pathLength++] = node;
     }
-   
-    
+
+
+   /**
+    * Calculates and returns a list of coordinates which are in the shortest path between two nodes in the exact order.
+    *
+    * @param startingPointID start id
+    * @param endPointID target id
+    * @return A list of coordinates (lon, lat) which are in the shortest path of two nodes (start coordinate last, target coordinate first).
+    */
+   public List<String> pathFromAToBCoords(int startingPointID, int endPointID){
+        return pathFromAToBCoords(startingPointID, endPointID, RoutingAlgorithm.DIJKSTRA);
+   }
+
    /**
     * Calculates and returns a list of coordinates which are in the shortest path between two nodes in the exact order.
-    * 
+    * The MapServer doesn't format the coordinates as strings, it streams them into the response (see PathWriter).
+    *
     * @param startingPointID start id
     * @param endPointID target id
+    * @param algorithm the algorithm which solves the query
     * @return A list of coordinates (lon, lat) which are in the shortest path of two nodes (start coordinate last, target coordinate first).
     */
-   public LinkedList<String> pathFromAToBCoords(int startingPointID, int endPointID){
-    	LinkedList<Integer> nodeList = this.pathFromAToB(startingPointID, endPointID);
-    	LinkedList<String> nodeListCoord = new LinkedList();
-    	if(nodeList.isEmpty()) {
+   public List<String> pathFromAToBCoords(int startingPointID, int endPointID, RoutingAlgorithm algorithm){
+    	int[] path = this.pathFromAToB(startingPointID, endPointID, algorithm);
+    	List<String> nodeListCoord = new ArrayList<>(Math.max(1, path.length));
+    	if(path.length == 0) {
     		nodeListCoord.add("null");
     		return nodeListCoord;
-    	}else {
-    		for(int i = 0; i<nodeList.size(); i++) {
-    			int currentNode = i;
-    			double[] currentNodeCoord = new double[2];
-    			currentNodeCoord[0] = graph.getLongitudeOfNode(nodeList.get(currentNode));
-        		currentNodeCoord[1] = graph.getLatitudeOfNode(nodeList.get(currentNode));
-        		nodeListCoord.add(Arrays.toString(currentNodeCoord));
-    		}
     	}
-    	
+    	double[] currentNodeCoord = new double[2];
+    	for (int node : path) {
+    		currentNodeCoord[0] = graph.getLongitudeOfNode(node);
+    		currentNodeCoord[1] = graph.getLatitudeOfNode(node);
+    		nodeListCoord.add(Arrays.toString(currentNodeCoord));
+    	}
 		return nodeListCoord;
     }
-   
-}
\ No newline at end of file
+
+    /**
+     * This class represents the state of one search direction: the distances, predecessors and
+     * stamps of all nodes and the priority queue of reached but not yet visited nodes.
+     * A reached node which isn't inside the queue anymore was visited.
+     */
+    private final class SearchSpace {
+        /*
+         * An array which stores all distances from the start of the search to all reached nodes
+         */
+        final int[] distance;
+        /*
+         * An array which stores the predecessor of each reached node in the search tree
+         */
+        final int[] previous;
+        /*
+         * An array which stores the generation in which the node was reached the last time
+         */
+        final int[] stamp;
+        /*
+         * A priority queue which sorts the reached but not yet visited nodes by their node distances
+         */
+        final IndexedMinHeap queue;
+
+        SearchSpace() {
+            this.distance = new int[numberOfNodes];
+            this.previous = new int[numberOfNodes];
+            this.stamp = new int[numberOfNodes];
+            this.queue = new IndexedMinHeap(numberOfNodes);
+        }
+
+        /**
+         * This method tells if the node was reached by the current search
+         *
+         * @param node node index
+         * @return true if the node has a distance in the current search
+         */
+        boolean isReached(int node) {
+            return stamp[node] == generation;
+        }
+
+        /**
+         * This method sets the distance and predecessor of a node and inserts it into the queue
+         * or decreases its key.
+         *
+         * @param node        node index
+         * @param nodeDistance new distance of the node
+         * @param predecessor predecessor in the search tree
+         */
+        void reach(int node, int nodeDistance, int predecessor) {
+            reach(node, nodeDistance, predecessor, nodeDistance);
+        }
+
+        /**
+         * This method sets the distance and predecessor of a node and inserts it into the queue
+         * with the given key or decreases its key.
+         *
+         * @param node        node index
+         * @param nodeDistance new distance of the node
+         * @param predecessor predecessor in the search tree
+         * @param key         key of the node inside the queue
+         */
+        void reach(int node, int nodeDistance, int predecessor, int key) {
+            stamp[node] = generation;
+            distance[node] = nodeDistance;
+            previous[node] = predecessor;
+            queue.insertOrDecrease(node, key);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class represents a pool of PathFinder objects for one graph. A PathFinder holds the state of
+ * a single search and must not be used by two threads at once, so every query borrows its own
+ * PathFinder from the pool and returns it afterwards. The graph itself is only read and can be shared.
+ * <p>
+ * Every PathFinder holds several arrays with one entry per node, so the pool creates at most maxSize of them.
+ * If all are borrowed, acquire waits until one is released.
+ */
+public class PathFinderPool {
+
+    /*
+     * the graph all PathFinders search on
+     */
+    private final Graph graph;
+    /*
+     * PathFinders which are currently not in use, the most recently returned one is borrowed first
+     * because its arrays are most likely still cached
+     */
+    private final ConcurrentLinkedDeque<PathFinder> idle = new ConcurrentLinkedDeque<>();
+    /*
+     * one permit per PathFinder which may still be borrowed, idle or not created yet
+     */
+    private final Semaphore available;
+    private final int maxSize;
+
+    /**
+     * Class constructor of the PathFinderPool
+     *
+     * @param graph   the graph
+     * @param maxSize maximum number of PathFinders, which is the number of searches that run at once
+     */
+    public PathFinderPool(Graph graph, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("invalid pool size " + maxSize);
+        }
+        this.graph = graph;
+        this.maxSize = maxSize;
+        this.available = new Semaphore(maxSize);
+    }
+
+    /**
+     * This method borrows a PathFinder. If no PathFinder is idle, a new one is created, unless the pool already
+     * has maxSize PathFinders, then it waits for one to be released.
+     * A caller must not borrow a second PathFinder while it holds one, it could wait for itself.
+     *
+     * @return a PathFinder which is exclusively used by the caller until it's released
+     */
+    public PathFinder acquire() {
+        available.acquireUninterruptibly();
+        PathFinder pathFinder = idle.pollFirst();
+        if (pathFinder == null) {
+            try {
+                pathFinder = new PathFinder(graph);
+            } catch (RuntimeException | Error e) {
+                available.release();
+                throw e;
+            }
+        }
+        return pathFinder;
+    }
+
+    /**
+     * This method returns a borrowed PathFinder to the pool, the effort of its last search is recorded in the
+     * metrics of the graph.
+     *
+     * @param pathFinder the borrowed PathFinder
+     */
+    public void release(PathFinder pathFinder) {
+        pathFinder.recordSearch();
+        idle.offerFirst(pathFinder);
+        available.release();
+    }
+
+    /**
+     * This method returns the maximum number of PathFinders
+     *
+     * @return the size of the pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
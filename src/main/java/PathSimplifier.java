@@ -0,0 +1,117 @@
+/**
+ * This class simplifies the geometry of a path with the Douglas-Peucker algorithm: a node is only kept if the
+ * path would otherwise deviate by more than the tolerance from it. The nodes are compared in Web Mercator
+ * coordinates like the tiles of the map, so a tolerance derived from the zoom level (see toleranceOfZoom) has the
+ * same size in pixels everywhere on the map.
+ */
+public final class PathSimplifier {
+
+    /*
+     * width of a map tile in pixels
+     */
+    private static final int TILE_SIZE = 256;
+
+    private PathSimplifier() {
+    }
+
+    /**
+     * This method returns the tolerance at which the simplification isn't visible on the map: half a pixel at
+     * the zoom level
+     *
+     * @param zoom     zoom level of the map (0 shows the whole earth on one tile)
+     * @param latitude latitude of the path in degrees, a pixel covers less ground towards the poles
+     * @return the tolerance in meters
+     */
+    public static double toleranceOfZoom(int zoom, double latitude) {
+        if (zoom < 0 || zoom > 30) {
+            throw new IllegalArgumentException("invalid zoom level " + zoom);
+        }
+        double metersPerPixel = 2 * Math.PI * GeoDistance.EARTH_RADIUS * Math.cos(Math.toRadians(latitude))
+                / (TILE_SIZE * Math.pow(2, zoom));
+        return metersPerPixel / 2;
+    }
+
+    /**
+     * This method simplifies the path, its first and last node are always kept
+     *
+     * @param graph     the graph of the node indices
+     * @param path      node indices of the path
+     * @param tolerance maximum deviation of the simplified path in meters, 0 keeps every node
+     * @return the node indices which are kept in the order of the path (the given array if all are kept)
+     */
+    public static int[] simplify(Graph graph, int[] path, double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("invalid tolerance " + tolerance);
+        }
+        int n = path.length;
+        if (n < 3 || tolerance == 0) {
+            return path;
+        }
+        //Mercator stretches the ground by 1 / cos(latitude), so the tolerance is scaled at the middle of the path
+        double middleLatitude = graph.getLatitudeOfNode(path[n / 2]);
+        double mercatorTolerance = tolerance / Math.cos(Math.toRadians(middleLatitude));
+        double squaredTolerance = mercatorTolerance * mercatorTolerance;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            double latitude = Math.toRadians(graph.getLatitudeOfNode(path[i]));
+            x[i] = GeoDistance.EARTH_RADIUS * Math.toRadians(graph.getLongitudeOfNode(path[i]));
+            y[i] = GeoDistance.EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + latitude / 2));
+        }
+
+        //the sections which are still to be checked, as pairs of first and last node, instead of a recursion
+        //whose depth could reach the length of the path
+        boolean[] kept = new boolean[n];
+        kept[0] = true;
+        kept[n - 1] = true;
+        int keptCount = 2;
+        int[] sections = new int[2 * n];
+        int top = 0;
+        sections[top++] = 0;
+        sections[top++] = n - 1;
+        while (top > 0) {
+            int last = sections[--top];
+            int first = sections[--top];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = squaredSegmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (maxDistance > squaredTolerance) {
+                kept[farthest] = true;
+                keptCount++;
+                sections[top++] = first;
+                sections[top++] = farthest;
+                sections[top++] = farthest;
+                sections[top++] = last;
+            }
+        }
+
+        int[] simplified = new int[keptCount];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (kept[i]) {
+                simplified[count++] = path[i];
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * This method calculates the squared distance of a point to a segment
+     */
+    private static double squaredSegmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class streams the coordinates of a path into a response, either as compact JSON [[lon,lat],...] or as
+ * binary array. The coordinates are formatted directly from their fixed-point representation (see
+ * Graph.COORDINATE_SCALE) into a small buffer, which is written to the stream whenever it is full. So a path of
+ * any length needs neither a string per coordinate nor the whole response in memory, and the decimals are exact.
+ * <p>
+ * The binary array holds longitude and latitude of each node as little-endian 32 bit integers, multiplied by
+ * Graph.COORDINATE_SCALE (8 bytes per node instead of about 24 in JSON).
+ * <p>
+ * The encoded polyline is Google's format: latitude and longitude with 5 decimals, each as difference to the
+ * previous node in printable characters of 5 bits, about 6 bytes per node of a road.
+ */
+public class PathWriter {
+
+    /*
+     * size of the buffer, the HttpServer sends each full buffer as one chunk
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+    /*
+     * number of decimal places of a fixed-point coordinate, Graph.COORDINATE_SCALE is 10^DECIMALS
+     */
+    private static final int DECIMALS = 7;
+    private static final int SCALE = (int) Graph.COORDINATE_SCALE;
+    /*
+     * factor between the fixed-point coordinates and the 5 decimals of an encoded polyline
+     */
+    private static final int POLYLINE_DIVISOR = SCALE / 100_000;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    /**
+     * Class constructor of the PathWriter
+     *
+     * @param out the stream of the response
+     */
+    public PathWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * This method writes the coordinates of the path as JSON array [[lon,lat],...], [null] if there is no path
+     *
+     * @param graph the graph of the node indices
+     * @param path  node indices of the path
+     * @throws IOException if the stream can't be written
+     */
+    public void writeJson(Graph graph, int[] path) throws IOException {
+        if (path.length == 0) {
+            writeAscii("[null]");
+            return;
+        }
+        reserve(1);
+        buffer[position++] = '[';
+        for (int i = 0; i < path.length; i++) {
+            //brackets, comma and two coordinates with sign, 3 digits, point and 7 decimals
+            reserve(4 + 2 * 12);
+            if (i > 0) {
+                buffer[position++] = ',';
+            }
+            buffer[position++] = '[';
+            putFixed(graph.getFixedLongitudeOfNode(path[i]));
+            buffer[position++] = ',';
+            putFixed(graph.getFixedLatitudeOfNode(path[i]));
+            buffer[position++] = ']';
+        }
+        reserve(1);
+        buffer[position++] = ']';
+    }
+
+    /**
+     * This method writes the coordinates of the path as binary array, nothing if there is no path
+     *
+     * @param graph the graph of the node indices
+     * @param path  node indices of the path
+     * @throws IOException if the stream can't be written
+     */
+    public void writeBinary(Graph graph, int[] path) throws IOException {
+        for (int node : path) {
+            reserve(8);
+            putInt(graph.getFixedLongitudeOfNode(node));
+            putInt(graph.getFixedLatitudeOfNode(node));
+        }
+    }
+
+    /**
+     * This method writes the coordinates of the path as encoded polyline, nothing if there is no path
+     *
+     * @param graph the graph of the node indices
+     * @param path  node indices of the path
+     * @throws IOException if the stream can't be written
+     */
+    public void writePolyline(Graph graph, int[] path) throws IOException {
+        int previousLatitude = 0;
+        int previousLongitude = 0;
+        for (int node : path) {
+            //a difference of less than 360 degrees needs at most 6 characters
+            reserve(2 * 6);
+            int latitude = Math.floorDiv(graph.getFixedLatitudeOfNode(node) + POLYLINE_DIVISOR / 2, POLYLINE_DIVISOR);
+            int longitude = Math.floorDiv(graph.getFixedLongitudeOfNode(node) + POLYLINE_DIVISOR / 2, POLYLINE_DIVISOR);
+            putPolylineValue(latitude - previousLatitude);
+            putPolylineValue(longitude - previousLongitude);
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+    }
+
+    /**
+     * This method writes a text which only consists of ASCII characters
+     *
+     * @param text the text
+     * @throws IOException if the stream can't be written
+     */
+    public void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            reserve(1);
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * This method writes the rest of the buffer and closes the stream
+     *
+     * @throws IOException if the stream can't be written
+     */
+    public void close() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.close();
+    }
+
+    /**
+     * This method writes the buffer to the stream if less than the given number of bytes are free
+     */
+    private void reserve(int bytes) throws IOException {
+        if (position + bytes > BUFFER_SIZE) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * This method formats a fixed-point coordinate as decimal number without trailing zeros
+     */
+    private void putFixed(int value) {
+        long absolute = value;
+        if (absolute < 0) {
+            buffer[position++] = '-';
+            absolute = -absolute;
+        }
+        putDigits(absolute / SCALE);
+        int fraction = (int) (absolute % SCALE);
+        if (fraction == 0) {
+            return;
+        }
+        int decimals = DECIMALS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            decimals--;
+        }
+        buffer[position++] = '.';
+        for (int i = position + decimals - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        position += decimals;
+    }
+
+    /**
+     * This method formats a non-negative number
+     */
+    private void putDigits(long number) {
+        int digits = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * This method encodes a value of a polyline: the sign in the lowest bit (inverted if negative), then chunks
+     * of 5 bits with the lowest first, each with a continuation bit and an offset of 63
+     */
+    private void putPolylineValue(int value) {
+        int bits = value < 0 ? ~(value << 1) : value << 1;
+        while (bits >= 0x20) {
+            buffer[position++] = (byte) ((0x20 | (bits & 0x1F)) + 63);
+            bits >>>= 5;
+        }
+        buffer[position++] = (byte) (bits + 63);
+    }
+
+    private void putInt(int value) {
+        buffer[position++] = (byte) value;
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 24);
+    }
+}
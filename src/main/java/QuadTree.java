@@ -1,289 +1,521 @@
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
- * This class represents a QuadTree object which represents the QuadTree data structure
+ * This class represents a static QuadTree over the nodes of the graph which answers nearest node queries.
+ * <p>
+ * The tree is stored in flat arrays instead of objects: every inner cell has exactly four children and all
+ * leaves are on the same level, so the cells are numbered level by level (the children of cell c are the
+ * cells 4c + 1 to 4c + 4) and no child references are needed. The nodes are stored ordered by leaf, every
+ * cell covers a contiguous range of this order which is calculated from the number of the cell. For each
+ * cell only its bounding box is stored.
+ * <p>
+ * The tree is bulk-loaded: the nodes are sorted along a Hilbert curve and every leaf takes the next run of
+ * this order, then the bounding boxes are calculated bottom-up. Both steps run in parallel.
+ * <p>
+ * The tree isn't changed after it's built, so any number of threads can search it at the same time.
  */
 public class QuadTree {
 
     /*
-     * the amounts of points which can fit inside the QuadTree node
+     * default number of nodes a leaf holds at most
      */
-    private final int capacity;
+    public static final int DEFAULT_LEAF_CAPACITY = 32;
+
     /*
-     * size and location of the QuadTree
+     * number of children of each inner cell
      */
-    Rectangle boundary;
+    private static final int FANOUT = 4;
     /*
-     * the points which are in the QuadTree
+     * the Hilbert curve runs through a grid of 2^HILBERT_ORDER * 2^HILBERT_ORDER cells over the bounding box
      */
-    private LinkedList<Point> points;
+    private static final int HILBERT_ORDER = 15;
     /*
-     * tells if the actual QuadTree is divided or not
+     * number of batch queries a thread answers at once, the queries of a block are next to each other
      */
-    boolean divided = false;
+    private static final int BATCH_BLOCK_SIZE = 256;
     /*
-     * represents the parent tree in which the QuadTree is in
+     * factor which converts a fixed-point coordinate into radians
      */
-    QuadTree parentTree;
+    private static final double RADIANS = Math.PI / 180 / Graph.COORDINATE_SCALE;
 
-    QuadTree northWest;
-    QuadTree northEast;
-    QuadTree southWest;
-    QuadTree southEast;
-    Graph graph;
+    private final int numberOfNodes;
+    /*
+     * level of the leaves, the root is on level 0
+     */
+    private final int depth;
+    /*
+     * number of the first leaf and number of leaves
+     */
+    private final int firstLeaf;
+    private final int numberOfLeaves;
+
+    /*
+     * node indices ordered by leaf and their fixed-point coordinates (see Graph.COORDINATE_SCALE) in the same order
+     */
+    private final int[] nodes;
+    private final int[] xs;
+    private final int[] ys;
+
+    /*
+     * bounding box of each cell in radians (minX, minY, maxX, maxY), an empty cell has minX > maxX
+     */
+    private final double[] boxes;
+    /*
+     * lower bound of the cosine of the latitudes in each cell, the cosine shrinks the longitude differences
+     */
+    private final double[] minCosLatitudes;
+
+    /*
+     * origin and cell width of the Hilbert grid in fixed-point coordinates
+     */
+    private final long gridMinX;
+    private final long gridMinY;
+    private final long gridCellSize;
 
     /**
      * Constructor method of the QuadTree class
      *
-     * @param graph    the given graph
-     * @param capacity capacity
-     * @param boundary the area the QuadTree node covers
-     * @param points   a list of all points which are getting inserted with the insert (Point point) method
+     * @param graph        the given graph
+     * @param leafCapacity the maximum amount of nodes in a leaf
      */
-    public QuadTree(Graph graph, int capacity, Rectangle boundary, LinkedList<Point> points) {
-        this.graph = graph;
-        this.boundary = graph.getBoundary();
-        this.points = points;
-        this.capacity = capacity;
-        this.boundary = boundary;
-        this.parentTree = this;
+    public QuadTree(Graph graph, int leafCapacity) {
+        if (leafCapacity < 1) {
+            throw new IllegalArgumentException("leaf capacity must be positive: " + leafCapacity);
+        }
+        this.numberOfNodes = graph.getNumberOfNodes();
+        int levels = 0;
+        long leaves = 1;
+        while (leaves * leafCapacity < numberOfNodes) {
+            leaves *= FANOUT;
+            levels++;
+        }
+        this.depth = levels;
+        this.numberOfLeaves = (int) leaves;
+        this.firstLeaf = (numberOfLeaves - 1) / (FANOUT - 1);
+
+        Rectangle boundary = graph.getBoundary();
+        double halfEdgeLength = boundary.getHalfEdgeLength() * Graph.COORDINATE_SCALE;
+        this.gridMinX = (long) Math.floor(boundary.getPoint().getXval() * Graph.COORDINATE_SCALE - halfEdgeLength);
+        this.gridMinY = (long) Math.floor(boundary.getPoint().getYval() * Graph.COORDINATE_SCALE - halfEdgeLength);
+        //width of a grid cell so that the boundary fits into the grid
+        this.gridCellSize = (long) Math.ceil(2 * halfEdgeLength + 2) / (1 << HILBERT_ORDER) + 1;
+
+        this.nodes = new int[numberOfNodes];
+        this.xs = new int[numberOfNodes];
+        this.ys = new int[numberOfNodes];
+        sortByHilbertKey(graph);
+
+        this.boxes = new double[4 * (firstLeaf + numberOfLeaves)];
+        this.minCosLatitudes = new double[firstLeaf + numberOfLeaves];
+        calculateBoxes();
     }
 
     /**
-     * This method inserts a Point if the point is inside the boundary
+     * This method orders the nodes along a Hilbert curve over the bounding box of the graph, so the nodes of
+     * a leaf (a run of this order) are close to each other. The keys are calculated in parallel and sorted
+     * together with the node indices in one long array.
      *
-     * @param point the given point
+     * @param graph the graph
      */
-    public void insert(Point point) {
-        if (!this.boundary.contains(point)) {
-            return;
-        }
+    private void sortByHilbertKey(Graph graph) {
+        //key in the upper half, node index in the lower half
+        long[] keys = new long[numberOfNodes];
+        IntStream.range(0, numberOfNodes).parallel().forEach(node -> {
+            int key = hilbertKeyOfCoordinate(graph.getFixedLongitudeOfNode(node), graph.getFixedLatitudeOfNode(node));
+            keys[node] = (long) key << 32 | node;
+        });
+        Arrays.parallelSort(keys);
+
+        IntStream.range(0, numberOfNodes).parallel().forEach(i -> {
+            int node = (int) keys[i];
+            nodes[i] = node;
+            xs[i] = graph.getFixedLongitudeOfNode(node);
+            ys[i] = graph.getFixedLatitudeOfNode(node);
+        });
+    }
 
-        if (points.size() < this.capacity) {
-            points.push(point);
-        } else {
-            if (!divided) {
-                this.subdivide();
-            }
-            this.northWest.insert(point);
-            this.northEast.insert(point);
-            this.southWest.insert(point);
-            this.southEast.insert(point);
+    /**
+     * This method calculates the position of a fixed-point coordinate on the Hilbert curve through the grid,
+     * coordinates outside of the grid get the position of the closest grid cell
+     *
+     * @param fixedX longitude multiplied by Graph.COORDINATE_SCALE
+     * @param fixedY latitude multiplied by Graph.COORDINATE_SCALE
+     * @return the position on the curve
+     */
+    private int hilbertKeyOfCoordinate(long fixedX, long fixedY) {
+        return hilbertKey(gridPosition(fixedX, gridMinX), gridPosition(fixedY, gridMinY));
+    }
 
-        }
+    private int gridPosition(long coordinate, long min) {
+        return (int) Math.max(0, Math.min((1 << HILBERT_ORDER) - 1, (coordinate - min) / gridCellSize));
     }
 
     /**
-     * This method divides the given QuadTree area into four new QuadTree areas (NW, NE, SW, SE), which are inside the boundary,
-     * with the size of one-forth of the boundary of the parent QuadTree node
+     * This method calculates the position of a grid cell on the Hilbert curve through the grid
+     *
+     * @param x column of the cell (0 to 2^HILBERT_ORDER - 1)
+     * @param y row of the cell (0 to 2^HILBERT_ORDER - 1)
+     * @return the position on the curve
      */
-    private void subdivide() {
-        double x = boundary.getPoint().getXval();
-        double y = boundary.getPoint().getYval();
-        double halfEdgeLength = boundary.getHalfEdgeLength();
-
-        Rectangle nw = new Rectangle(new Point(x - halfEdgeLength / 2, y + halfEdgeLength / 2), halfEdgeLength / 2);
-        this.northWest = new QuadTree(graph, this.capacity, nw, new LinkedList<>());
+    static int hilbertKey(int x, int y) {
+        //the curve is rotated in a quadrant by flipping both coordinates and/or swapping them, both operations
+        //commute, so the rotation of the current quadrant is just the parity of the flips and of the swaps
+        int flip = 0;
+        int swap = 0;
+        int key = 0;
+        for (int bit = HILBERT_ORDER - 1; bit >= 0; bit--) {
+            int bx = ((x >>> bit) & 1) ^ flip;
+            int by = ((y >>> bit) & 1) ^ flip;
+            int swapped = (bx ^ by) & swap;
+            int rx = bx ^ swapped;
+            int ry = by ^ swapped;
+            key = (key << 2) | ((3 * rx) ^ ry);
+            flip ^= (ry ^ 1) & rx;
+            swap ^= ry ^ 1;
+        }
+        return key;
+    }
 
-        Rectangle ne = new Rectangle(new Point(x + halfEdgeLength / 2, y + halfEdgeLength / 2), halfEdgeLength / 2);
-        this.northEast = new QuadTree(graph, this.capacity, ne, new LinkedList<>());
+    /**
+     * This method calculates the bounding boxes bottom-up, first of the leaves from their nodes and then level
+     * by level of the inner cells from their children. The cells of a level are calculated in parallel.
+     */
+    private void calculateBoxes() {
+        IntStream.range(firstLeaf, firstLeaf + numberOfLeaves).parallel().forEach(leaf -> {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            int end = end(leaf);
+            for (int i = begin(leaf); i < end; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            if (minX > maxX) {
+                setBox(leaf, Double.POSITIVE_INFINITY, 0, Double.NEGATIVE_INFINITY, 0);
+            } else {
+                setBox(leaf, minX * RADIANS, minY * RADIANS, maxX * RADIANS, maxY * RADIANS);
+            }
+        });
+        for (int levelEnd = firstLeaf; levelEnd > 0; levelEnd = (levelEnd - 1) / FANOUT) {
+            int levelBegin = (levelEnd - 1) / FANOUT;
+            IntStream.range(levelBegin, levelEnd).parallel().forEach(cell -> {
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                for (int child = FANOUT * cell + 1; child <= FANOUT * cell + FANOUT; child++) {
+                    if (boxes[4 * child] > boxes[4 * child + 2]) {
+                        continue;
+                    }
+                    minX = Math.min(minX, boxes[4 * child]);
+                    minY = Math.min(minY, boxes[4 * child + 1]);
+                    maxX = Math.max(maxX, boxes[4 * child + 2]);
+                    maxY = Math.max(maxY, boxes[4 * child + 3]);
+                }
+                setBox(cell, minX, minY, maxX, maxY);
+            });
+        }
+    }
 
-        Rectangle sw = new Rectangle(new Point(x - halfEdgeLength / 2, y - halfEdgeLength / 2), halfEdgeLength / 2);
-        this.southWest = new QuadTree(graph, this.capacity, sw, new LinkedList<>());
+    private void setBox(int cell, double minX, double minY, double maxX, double maxY) {
+        boxes[4 * cell] = minX;
+        boxes[4 * cell + 1] = minY;
+        boxes[4 * cell + 2] = maxX;
+        boxes[4 * cell + 3] = maxY;
+        //the cosine is concave between -90 and 90 degrees, so its minimum is at one of the borders,
+        //rounding down keeps the value a lower bound
+        double minCos = minX > maxX ? 0 : Math.min(Math.cos(minY), Math.cos(maxY));
+        minCosLatitudes[cell] = Math.max(0, Math.nextDown(minCos));
+    }
 
-        Rectangle se = new Rectangle(new Point(x + halfEdgeLength / 2, y - halfEdgeLength / 2), halfEdgeLength / 2);
-        this.southEast = new QuadTree(graph, this.capacity, se, new LinkedList<>());
+    /**
+     * This method returns the first position of the nodes of a cell
+     *
+     * @param cell number of the cell
+     * @return the position in the node order
+     */
+    private int begin(int cell) {
+        //the first descendant of the cell on the leaf level
+        long leaf = cell;
+        while (leaf < firstLeaf) {
+            leaf = FANOUT * leaf + 1;
+        }
+        return (int) ((leaf - firstLeaf) * numberOfNodes / numberOfLeaves);
+    }
 
+    /**
+     * This method returns the position after the nodes of a cell
+     *
+     * @param cell number of the cell
+     * @return the position in the node order
+     */
+    private int end(int cell) {
+        //the last descendant of the cell on the leaf level
+        long leaf = cell;
+        while (leaf < firstLeaf) {
+            leaf = FANOUT * leaf + FANOUT;
+        }
+        return (int) ((leaf - firstLeaf + 1) * numberOfNodes / numberOfLeaves);
+    }
 
-        this.divided = true;
+    /**
+     * This method returns the indices of all nodes in the order of the Hilbert curve (see Graph.renumberNodes)
+     *
+     * @return a copy of the node indices in curve order
+     */
+    int[] getNodesInCurveOrder() {
+        return nodes.clone();
     }
 
     /**
-     * This method calculates the nearest point from the input point
+     * This method calculates the node which is nearest to the coordinate (great-circle distance).
      * <p>
-     * (Based on the idea to create a Rectangle with the given point as the center and the halfEdgeLength
-     * as the maximum distance from the point to the edge of the parent node, which ensures that there is
-     * at least one other node inside the new rectangle. Add all points to a list which are inside this
-     * rectangle and calculate the Eucledian distance from searchPoint to all of them and choose the point with
-     * the shortest distance.)
+     * The cells are visited best-first: a priority queue holds the cells ordered by the distance from the
+     * coordinate to their bounding box (a lower bound, see cellBound), and the search stops as soon as no cell
+     * in the queue can contain a node nearer than the nearest node found so far. The result is exact, of
+     * several nodes with the same distance the one with the smallest index is returned.
      *
-     * @param searchPoint input point
-     * @return the nearest point
+     * @param lon longitude
+     * @param lat latitude
+     * @return the index of the nearest node or -1 if the graph has no nodes
      */
-    public Point getNearest(Point searchPoint) {
-        Point nearestPoint = null;
-
-        if (graph.getBoundary().contains(searchPoint)) {
-
-            //calculate maxDistance from searchPoint to boundary of parent quadTree
-            Rectangle boundary = deepContains(searchPoint, this).getBoundary();
-            double maxDistance = maxDistance(searchPoint, boundary);
-
-            //create a rectangle double the size of boundary with point in between
-            Rectangle intersectRectangle = new Rectangle(new Point(searchPoint.getXval(), searchPoint.getYval()), maxDistance);
-            ArrayList<QuadTree> intersectingList = new ArrayList<>();
-
-            deepIntersects(intersectRectangle, this, intersectingList);
-
-            //calculate distance
-            double currentDistance;
-            maxDistance = Double.MAX_VALUE;
-            for (QuadTree currentTree : intersectingList) {
-                for (int j = 0; j < currentTree.getPoints().size(); j++) {
-                    Point currentPoint = currentTree.getPoints().get(j);
-                    if (intersectRectangle.contains(currentPoint)) {
-                        currentDistance = calculateEucledianDistance(searchPoint.getXval(), searchPoint.getYval(), currentPoint.getXval(), currentPoint.getYval());
-                        if (currentDistance < maxDistance) {
-                            maxDistance = currentDistance;
-                            nearestPoint = currentPoint;
-                        }
-                    }
-                }
-            }
-            return nearestPoint;
-        }
-        return nearestPoint;
+    public int getNearest(double lon, double lat) {
+        return getNearest(lon, lat, new CellQueue());
     }
 
-
     /**
-     * This method does a depth search the second-smallest QuadTree leaf which contains the specific Point
+     * This method calculates the nearest nodes of many coordinates at once. The coordinates are sorted along
+     * the Hilbert curve of the tree, so consecutive searches visit the same cells, and blocks of sorted
+     * coordinates are searched in parallel.
      *
-     * @param point the specific point
-     * @param tree  the specific QuadTree
-     * @return the second-smallest QuadTree which contains the specific Point
+     * @param lons longitudes
+     * @param lats latitudes, same length as lons
+     * @return the index of the nearest node of each coordinate (in the order of the arrays), -1 if the graph
+     * has no nodes
+     * @throws IllegalArgumentException if the arrays have different lengths
      */
-    private QuadTree deepContains(Point point, QuadTree tree) {
-        //store parent if tree is at min level
-        if (!tree.isDivided()) {
-            return parentTree = tree.getParent();
-        } else {
-            //iterate through every quadTree level
-            if (tree.isDivided() && tree.getNorthwest().getBoundary().contains(point))
-                deepContains(point, tree.getNorthwest());
-            if (tree.isDivided() && tree.getNortheast().getBoundary().contains(point))
-                deepContains(point, tree.getNortheast());
-            if (tree.isDivided() && tree.getSouthwest().getBoundary().contains(point))
-                deepContains(point, tree.getSouthwest());
-            if (tree.isDivided() && tree.getSoutheast().getBoundary().contains(point))
-                deepContains(point, tree.getSoutheast());
+    public int[] getNearest(double[] lons, double[] lats) {
+        if (lons.length != lats.length) {
+            throw new IllegalArgumentException(lons.length + " longitudes but " + lats.length + " latitudes");
         }
-        return parentTree;
+        int count = lons.length;
+        //key in the upper half, position of the coordinate in the lower half
+        long[] order = new long[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int key = hilbertKeyOfCoordinate(Math.round(lons[i] * Graph.COORDINATE_SCALE),
+                    Math.round(lats[i] * Graph.COORDINATE_SCALE));
+            order[i] = (long) key << 32 | i;
+        });
+        Arrays.parallelSort(order);
+
+        int[] nearest = new int[count];
+        IntStream.range(0, (count + BATCH_BLOCK_SIZE - 1) / BATCH_BLOCK_SIZE).parallel().forEach(block -> {
+            CellQueue queue = new CellQueue();
+            for (int i = block * BATCH_BLOCK_SIZE; i < Math.min(count, (block + 1) * BATCH_BLOCK_SIZE); i++) {
+                int query = (int) order[i];
+                nearest[query] = getNearest(lons[query], lats[query], queue);
+            }
+        });
+        return nearest;
     }
 
+    /**
+     * This method searches the nearest node with the given queue, which is empty afterwards.
+     * <p>
+     * Distances are compared by the haversine value h = sin^2(dLat / 2) + cos(lat1) cos(lat2) sin^2(dLon / 2),
+     * which grows with the great-circle distance. Cells and nodes are first compared by bounds of h without
+     * trigonometric functions (see lowerBound), only the nodes which can be nearer than all other nodes of
+     * their leaf and the nearest node so far are compared by their exact value.
+     */
+    private int getNearest(double lon, double lat, CellQueue queue) {
+        if (numberOfNodes == 0) {
+            return -1;
+        }
+        double lambda = Math.toRadians(lon);
+        double phi = Math.toRadians(lat);
+        double cosPhi = Math.cos(phi);
+        queue.nearest = -1;
+        queue.nearestH = Double.POSITIVE_INFINITY;
+
+        queue.add(0, cellBound(0, lambda, phi, cosPhi));
+        while (!queue.isEmpty() && queue.peekKey() <= queue.nearestH) {
+            int cell = queue.poll();
+            if (cell >= firstLeaf) {
+                searchLeaf(cell, lambda, phi, cosPhi, queue);
+            } else {
+                for (int child = FANOUT * cell + 1; child <= FANOUT * cell + FANOUT; child++) {
+                    if (boxes[4 * child] <= boxes[4 * child + 2]) {
+                        double bound = cellBound(child, lambda, phi, cosPhi);
+                        if (bound <= queue.nearestH) {
+                            queue.add(child, bound);
+                        }
+                    }
+                }
+            }
+        }
+        queue.clear();
+        return queue.nearest;
+    }
 
     /**
-     * This method does a depth search to build a  list of QuadTrees which are intersecting with the given
-     * rectangle
+     * This method compares the nodes of a leaf with the nearest node of the search
      *
-     * @param rectangle        the given rectangle which intersects with some QuadTrees
-     * @param tree             the QuadTrees
-     * @param intersectingList a list of intersecting QuadTRees
+     * @param leaf   number of the leaf
+     * @param lambda longitude of the coordinate in radians
+     * @param phi    latitude of the coordinate in radians
+     * @param cosPhi cosine of the latitude
+     * @param queue  the queue of the search, which holds its nearest node
      */
-    private void deepIntersects(Rectangle rectangle, QuadTree tree, ArrayList<QuadTree> intersectingList) {
-        //iterate through every QuadTree intersecting with rectangle
-        boolean intersected = false;
-        if (tree.isDivided()) {
-            if (tree.getNortheast().getBoundary().intersects(rectangle)) {
-                deepIntersects(rectangle, tree.getNortheast(), intersectingList);
-                intersected = true;
-            }
-            if (tree.getNorthwest().getBoundary().intersects(rectangle)) {
-                deepIntersects(rectangle, tree.getNorthwest(), intersectingList);
-                intersected = true;
-            }
-            if (tree.getSoutheast().getBoundary().intersects(rectangle)) {
-                deepIntersects(rectangle, tree.getSoutheast(), intersectingList);
-                intersected = true;
+    private void searchLeaf(int leaf, double lambda, double phi, double cosPhi, CellQueue queue) {
+        double minCosFactor = cosPhi * minCosLatitudes[leaf];
+        double maxCosFactor = cosPhi * maxCosLatitude(leaf);
+        //first pass: the smallest upper bound of h in the leaf (sin(x) <= x), nodes whose lower bound
+        //is greater can't be the nearest node
+        int begin = begin(leaf);
+        int end = end(leaf);
+        double threshold = queue.nearestH;
+        for (int i = begin; i < end; i++) {
+            double halfDeltaLambda = (xs[i] * RADIANS - lambda) / 2;
+            double halfDeltaPhi = (ys[i] * RADIANS - phi) / 2;
+            threshold = Math.min(threshold,
+                    halfDeltaPhi * halfDeltaPhi + maxCosFactor * halfDeltaLambda * halfDeltaLambda);
+        }
+        //second pass: exact values of the remaining nodes
+        for (int i = begin; i < end; i++) {
+            double deltaLambda = xs[i] * RADIANS - lambda;
+            double deltaPhi = ys[i] * RADIANS - phi;
+            if (lowerBound(deltaPhi) + minCosFactor * lowerBound(deltaLambda) > threshold) {
+                continue;
             }
-            if (tree.getSouthwest().getBoundary().intersects(rectangle)) {
-                deepIntersects(rectangle, tree.getSouthwest(), intersectingList);
-                intersected = true;
+            double sinDeltaPhi = Math.sin(deltaPhi / 2);
+            double sinDeltaLambda = Math.sin(deltaLambda / 2);
+            double h = sinDeltaPhi * sinDeltaPhi
+                    + cosPhi * Math.cos(ys[i] * RADIANS) * sinDeltaLambda * sinDeltaLambda;
+            if (h < queue.nearestH || h == queue.nearestH && nodes[i] < queue.nearest) {
+                queue.nearestH = h;
+                queue.nearest = nodes[i];
             }
         }
-        //add quadTree to list if no subdivided quadTree intersected with rectangle
-        if (!intersected) intersectingList.add(tree);
-
     }
 
-
     /**
-     * This method calculates the maximum distance from the point to the edge of the parent node
-     * which should be determined to be the haldEdgeLength of the new rectangle with the searchPoint
-     * as centerPoint.
+     * This method calculates a lower bound of the haversine value from a coordinate to all nodes of a cell:
+     * the latitude and longitude differences are at least the distances to the borders of the bounding box
+     * and the cosine of the latitudes is at least minCosLatitudes
      *
-     * @param searchPoint the given searchPoint
-     * @param boundary    the parent QuadTree of the smallest QuadTree which contains searchPoint
-     * @return the maximum distance from the point to the edge of the parent node
+     * @return 0 if the coordinate is inside the box
      */
-    public double maxDistance(Point searchPoint, Rectangle boundary) {
-        double maxDistanceX, maxDistanceY, maxNegDistanceX, maxNegDistanceY;
-
-        //distance to upper left corner
-        maxDistanceX = calculateEucledianDistance(searchPoint.getXval(), searchPoint.getYval(),
-                boundary.getPoint().getXval() - boundary.getHalfEdgeLength(), boundary.getPoint().getYval() - boundary.getHalfEdgeLength());
-        //distance to upper right corner
-        maxNegDistanceX = calculateEucledianDistance(searchPoint.getXval(), searchPoint.getYval(),
-                boundary.getPoint().getXval() + boundary.getHalfEdgeLength(), boundary.getPoint().getYval() - boundary.getHalfEdgeLength());
-        //distance to lower left corner
-        maxDistanceY = calculateEucledianDistance(searchPoint.getXval(), searchPoint.getYval(),
-                boundary.getPoint().getXval() - boundary.getHalfEdgeLength(), boundary.getPoint().getYval() + boundary.getHalfEdgeLength());
-        //distance to lower right corner
-        maxNegDistanceY = calculateEucledianDistance(searchPoint.getXval(), searchPoint.getYval(),
-                boundary.getPoint().getXval() + boundary.getHalfEdgeLength(), boundary.getPoint().getYval() + boundary.getHalfEdgeLength());
-
-        //Calculate maxDistance to boundary
-        maxDistanceX = Math.max(maxDistanceX, maxNegDistanceX);
-        maxDistanceY = Math.max(maxDistanceY, maxNegDistanceY);
-        return Math.max(maxDistanceX, maxDistanceY);
+    private double cellBound(int cell, double lambda, double phi, double cosPhi) {
+        double west = boxes[4 * cell] - lambda;
+        double east = lambda - boxes[4 * cell + 2];
+        double south = boxes[4 * cell + 1] - phi;
+        double north = phi - boxes[4 * cell + 3];
+        double deltaLambda = west > 0 ? west : east > 0 ? east : 0;
+        double deltaPhi = south > 0 ? south : north > 0 ? north : 0;
+        return lowerBound(deltaPhi) + cosPhi * minCosLatitudes[cell] * lowerBound(deltaLambda);
     }
 
+    /**
+     * This method calculates the maximum cosine of the latitudes of a cell, the cosine is greatest at the
+     * latitude closest to the equator
+     */
+    private double maxCosLatitude(int cell) {
+        double minY = boxes[4 * cell + 1];
+        double maxY = boxes[4 * cell + 3];
+        if (minY <= 0 && maxY >= 0) {
+            return 1;
+        }
+        return Math.nextUp(Math.cos(Math.min(Math.abs(minY), Math.abs(maxY))));
+    }
 
     /**
-     * This method calculates the Eucledian distance of two coordinates
+     * This method calculates a lower bound of sin^2(delta / 2) with sin(x) >= x - x^3 / 6 for x >= 0
      *
-     * @param x1 x-value of first coordinate
-     * @param y1 y-value of first coordinate
-     * @param x2 x-value of second coordinate
-     * @param y2 y-value of second coordinate
-     * @return the Eucledian distance
+     * @param delta difference of two angles in radians
+     * @return the lower bound, 0 for differences of more than 180 degrees (around the antimeridian)
      */
-    private double calculateEucledianDistance(double x1, double y1, double x2, double y2) {
-        return Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+    private static double lowerBound(double delta) {
+        double x = Math.abs(delta) / 2;
+        if (x > Math.PI / 2) {
+            return 0;
+        }
+        double sin = x - x * x * x / 6;
+        return sin * sin;
     }
 
-
-    public QuadTree getNortheast() {
-        return northEast;
+    public int getNumberOfNodes() {
+        return numberOfNodes;
     }
 
-    public QuadTree getNorthwest() {
-        return northWest;
+    public int getDepth() {
+        return depth;
     }
 
-    public QuadTree getSoutheast() {
-        return southEast;
-    }
+    /**
+     * This class represents the binary min heap of cells of one search, ordered by their distance, together
+     * with the nearest node found so far
+     */
+    private static final class CellQueue {
 
-    public QuadTree getSouthwest() {
-        return southWest;
-    }
+        private int[] cells = new int[64];
+        private double[] keys = new double[64];
+        private int size;
 
-    public boolean isDivided() {
-        return divided;
-    }
+        /*
+         * nearest node of the search and its haversine value
+         */
+        int nearest;
+        double nearestH;
 
-    public LinkedList<Point> getPoints() {
-        return points;
-    }
+        boolean isEmpty() {
+            return size == 0;
+        }
 
-    public QuadTree getParent() {
-        return this.parentTree;
-    }
+        void clear() {
+            size = 0;
+        }
 
-    public Rectangle getBoundary() {
-        return boundary;
-    }
+        double peekKey() {
+            return keys[0];
+        }
+
+        void add(int cell, double key) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            int i = size++;
+            while (i > 0 && keys[(i - 1) >>> 1] > key) {
+                int parent = (i - 1) >>> 1;
+                cells[i] = cells[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            cells[i] = cell;
+            keys[i] = key;
+        }
 
+        int poll() {
+            int cell = cells[0];
+            size--;
+            int lastCell = cells[size];
+            double lastKey = keys[size];
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                cells[i] = cells[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            cells[i] = lastCell;
+            keys[i] = lastKey;
+            return cell;
+        }
+    }
 }
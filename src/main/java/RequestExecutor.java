@@ -0,0 +1,300 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents the execution model of the MapServer. Requests are dispatched to virtual threads (or to a
+ * bounded pool of platform threads if the JVM has no virtual threads), so a slow request never blocks the others.
+ * The dispatching thread reads the request and writes the response, only the calculation itself (see compute)
+ * runs on a bounded pool of workers, one per core by default, with a bounded queue in front of it. So a worker
+ * never waits for a slow client.
+ * <p>
+ * Under overload a request is rejected at once with 503 instead of waiting: if its endpoint already answers its
+ * maximum number of requests, or if the queue of the workers is full. The pool of platform threads has a bounded
+ * queue too, the HttpServer closes the connection of a request which doesn't fit into it.
+ * <p>
+ * A calculation which uses parallel streams, e.g. a distance matrix, occupies one worker, but its parallel
+ * parts run on the common ForkJoinPool and aren't bounded by the workers, only by the limit of the endpoint.
+ */
+public class RequestExecutor {
+
+    /*
+     * number of requests which may wait for a platform thread of the dispatcher, they wait only briefly since
+     * most of them either wait for a worker or are rejected with 503 once they run
+     */
+    static final int DISPATCHER_QUEUE_CAPACITY = 1 << 10;
+
+    private final ExecutorService dispatcher;
+    private final boolean virtual;
+    private final ThreadPoolExecutor workers;
+    private final LongAdder rejectedConnections = new LongAdder();
+    /*
+     * the limited handler of each endpoint
+     */
+    private final Map<String, LimitedHandler> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor of the RequestExecutor
+     *
+     * @param numberOfWorkers number of threads which calculate routes
+     * @param queueCapacity   number of calculations which may wait for a worker
+     * @param useVirtual      true if requests are dispatched to virtual threads (if the JVM supports them)
+     */
+    public RequestExecutor(int numberOfWorkers, int queueCapacity, boolean useVirtual) {
+        ExecutorService virtualThreads = useVirtual ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualThreads != null;
+        //without virtual threads every calculation which runs or waits for a worker blocks a platform thread,
+        //so there are enough of them left for the other requests. The HttpServer can't answer a request whose
+        //dispatch is rejected, it closes the connection
+        int numberOfDispatchers = numberOfWorkers + queueCapacity + Runtime.getRuntime().availableProcessors();
+        this.dispatcher = virtual ? virtualThreads : newPool("dispatcher", numberOfDispatchers,
+                new ArrayBlockingQueue<>(DISPATCHER_QUEUE_CAPACITY), (runnable, pool) -> {
+                    rejectedConnections.increment();
+                    throw new RejectedExecutionException("dispatcher queue is full");
+                });
+        this.workers = newPool("worker", numberOfWorkers, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * This method creates an executor which starts a virtual thread per task. Virtual threads exist since Java
+     * 21, the project is compiled for an older version, so the factory method is looked up at runtime.
+     *
+     * @return the executor or null if the JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method creates a pool with a fixed number of threads, a task which doesn't fit into the queue is
+     * passed to the rejection handler
+     */
+    private static ThreadPoolExecutor newPool(String name, int numberOfThreads, BlockingQueue<Runnable> queue,
+                                              RejectedExecutionHandler rejectionHandler) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, rejectionHandler);
+    }
+
+    /**
+     * This method returns the executor for the HttpServer, which dispatches the requests to the handlers
+     *
+     * @return the dispatching executor
+     */
+    public Executor getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * This method tells if requests are dispatched to virtual threads
+     *
+     * @return true for virtual threads, false for a pool of platform threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * This method returns the number of calculations which wait for a worker
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * This method returns the number of workers which are calculating
+     *
+     * @return the number of busy workers
+     */
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * This method returns the number of requests which were rejected because the queue of the dispatcher was
+     * full, their connections were closed
+     *
+     * @return the number of rejected connections, always 0 for virtual threads
+     */
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * This method calculates on a worker and waits for the result, which costs nothing on a virtual thread. The
+     * handler reads the request before and writes the response after the calculation on its own thread.
+     *
+     * @param calculation the calculation, it mustn't touch the exchange
+     * @param <T>         the type of the result
+     * @return the result of the calculation
+     * @throws RejectedExecutionException if the queue of the workers is full, the limited handler (see limit)
+     *                                    answers the request with 503
+     * @throws IOException                if the calculation throws a checked exception or the thread is interrupted
+     */
+    public <T> T compute(Callable<T> calculation) throws IOException {
+        Future<T> result = workers.submit(calculation);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the worker", e);
+        }
+    }
+
+    /**
+     * This method limits the number of requests the handler answers at once, further requests are rejected
+     * with 503. So are the requests whose calculation (see compute) doesn't fit into the queue of the workers.
+     *
+     * @param endpoint      name of the endpoint, e.g. "request"
+     * @param handler       the handler
+     * @param maxConcurrent maximum number of requests at once
+     * @return the limited handler
+     */
+    public HttpHandler limit(String endpoint, HttpHandler handler, int maxConcurrent) {
+        LimitedHandler limited = new LimitedHandler(handler, maxConcurrent);
+        endpoints.put(endpoint, limited);
+        return limited;
+    }
+
+    /**
+     * This method returns the names of the limited endpoints
+     *
+     * @return the endpoints
+     */
+    public Set<String> getEndpoints() {
+        return endpoints.keySet();
+    }
+
+    /**
+     * This method returns the number of requests the endpoint is answering
+     *
+     * @param endpoint name of the endpoint
+     * @return the number of requests in flight
+     */
+    public int getInFlightRequests(String endpoint) {
+        LimitedHandler limited = endpoints.get(endpoint);
+        return limited == null ? 0 : limited.maxConcurrent - limited.permits.availablePermits();
+    }
+
+    /**
+     * This method returns the number of requests of the endpoint which were rejected with 503
+     *
+     * @param endpoint name of the endpoint
+     * @return the number of rejected requests
+     */
+    public long getRejectedRequests(String endpoint) {
+        LimitedHandler limited = endpoints.get(endpoint);
+        return limited == null ? 0 : limited.rejected.sum();
+    }
+
+    /**
+     * This method answers a request with 503, the client may retry after a second
+     *
+     * @param exchange the request
+     * @throws IOException in case the response can't be sent
+     */
+    static void rejectOverloaded(HttpExchange exchange) throws IOException {
+        byte[] bytes = "Server overloaded, please retry".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(503, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+
+    /**
+     * This method stops the dispatcher and the workers: new requests and calculations are rejected, the running
+     * calculations are finished
+     *
+     * @param timeout maximum time to wait for the running calculations
+     * @param unit    unit of the timeout
+     * @return true if all calculations finished in time
+     * @throws InterruptedException if the thread is interrupted while it waits
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        dispatcher.shutdown();
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * This class represents a handler with a maximum number of requests at once
+     */
+    private final class LimitedHandler implements HttpHandler {
+        private final HttpHandler handler;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+        private final LongAdder rejected = new LongAdder();
+
+        LimitedHandler(HttpHandler handler, int maxConcurrent) {
+            this.handler = handler;
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!permits.tryAcquire()) {
+                rejected.increment();
+                rejectOverloaded(exchange);
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } catch (RejectedExecutionException e) {
+                //the workers reject a calculation before the handler responds
+                if (exchange.getResponseCode() != -1) {
+                    throw e;
+                }
+                rejected.increment();
+                rejectOverloaded(exchange);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
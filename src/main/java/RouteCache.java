@@ -0,0 +1,474 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a size-bounded cache of shortest paths, keyed by the pair of source and target node.
+ * Every algorithm calculates a shortest path, so a cached path answers the query of every algorithm.
+ * <p>
+ * The cache is split into segments with their own lock, a key always belongs to the same segment, so threads
+ * only wait for each other if their keys share a segment. When a segment is full, the least recently used (LRU)
+ * or least frequently used (LFU) entry of the segment is evicted.
+ * <p>
+ * The paths are stored compactly: the differences between consecutive node indices as variable-length
+ * integers, most of them need one or two bytes because neighbouring nodes have close indices (see NodeOrder).
+ * The node indices belong to one graph, the entries are dropped as soon as the cache is used with another graph.
+ */
+public class RouteCache {
+
+    /**
+     * This enum represents the entry which is evicted when a segment is full
+     */
+    public enum Policy {
+        /*
+         * the entry which wasn't used for the longest time
+         */
+        LRU("lru"),
+        /*
+         * the entry with the fewest hits, of several such entries the one which wasn't used for the longest time
+         */
+        LFU("lfu");
+
+        private final String name;
+
+        Policy(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * This method returns the policy with the given name
+         *
+         * @param name name of the policy
+         * @return the policy or null if there is no policy with this name
+         */
+        public static Policy fromName(String name) {
+            for (Policy policy : values()) {
+                if (policy.name.equals(name)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    /*
+     * the path of a query without path
+     */
+    private static final int[] NO_PATH = new int[0];
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int capacity;
+    private final Policy policy;
+
+    /*
+     * the graph the cached node indices belong to
+     */
+    private volatile Graph graph;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Class constructor of the RouteCache
+     *
+     * @param capacity maximum number of paths, 0 disables the cache
+     * @param policy   the entry which is evicted when a segment is full
+     */
+    public RouteCache(int capacity, Policy policy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        //several segments per thread, but at least a few entries per segment
+        int numberOfSegments = Integer.highestOneBit(Math.max(1,
+                Math.min(4 * Runtime.getRuntime().availableProcessors(), capacity / 16)));
+        this.segments = new Segment[numberOfSegments];
+        this.segmentMask = numberOfSegments - 1;
+        int segmentCapacity = (capacity + numberOfSegments - 1) / numberOfSegments;
+        for (int i = 0; i < numberOfSegments; i++) {
+            segments[i] = policy == Policy.LRU ? new LruSegment(segmentCapacity) : new LfuSegment(segmentCapacity);
+        }
+    }
+
+    /**
+     * This method returns the cached path between two nodes
+     *
+     * @param graph  the graph of the node indices
+     * @param source index of the source node
+     * @param target index of the target node
+     * @return the node indices of the path (target first, source last, empty if there is no path) or null if the
+     * path isn't cached
+     */
+    public int[] get(Graph graph, int source, int target) {
+        if (capacity == 0) {
+            return null;
+        }
+        checkGraph(graph);
+        long key = key(source, target);
+        byte[] encoded;
+        Segment segment = segment(key);
+        synchronized (segment) {
+            encoded = segment.get(key);
+        }
+        if (encoded == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return decode(encoded);
+    }
+
+    /**
+     * This method stores the path between two nodes, the least recently or frequently used path of the segment
+     * is evicted if the segment is full
+     *
+     * @param graph  the graph of the node indices
+     * @param source index of the source node
+     * @param target index of the target node
+     * @param path   the node indices of the path (target first, source last, empty if there is no path)
+     */
+    public void put(Graph graph, int source, int target, int[] path) {
+        if (capacity == 0) {
+            return;
+        }
+        checkGraph(graph);
+        long key = key(source, target);
+        byte[] encoded = encode(path);
+        Segment segment = segment(key);
+        boolean evicted;
+        synchronized (segment) {
+            evicted = segment.put(key, encoded);
+        }
+        if (evicted) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * This method removes all paths, the counters are kept
+     */
+    public void invalidate() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * This method drops all paths if the cache is used with another graph than before, e.g. after the graph
+     * was reloaded
+     */
+    private void checkGraph(Graph graph) {
+        if (this.graph != graph) {
+            synchronized (this) {
+                if (this.graph != graph) {
+                    invalidate();
+                    this.graph = graph;
+                }
+            }
+        }
+    }
+
+    private static long key(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    private Segment segment(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    /**
+     * This method encodes the node indices of a path: the first index and then the differences to the previous
+     * index, each zigzag-encoded (so small negative differences are small too) as variable-length integer with
+     * 7 bits per byte
+     *
+     * @param path node indices
+     * @return the encoded path
+     */
+    static byte[] encode(int[] path) {
+        byte[] buffer = new byte[5 * path.length];
+        int length = 0;
+        int previous = 0;
+        for (int node : path) {
+            int delta = node - previous;
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[length++] = (byte) zigzag;
+            previous = node;
+        }
+        byte[] encoded = new byte[length];
+        System.arraycopy(buffer, 0, encoded, 0, length);
+        return encoded;
+    }
+
+    /**
+     * This method decodes a path which was encoded by encode
+     *
+     * @param encoded the encoded path
+     * @return node indices
+     */
+    static int[] decode(byte[] encoded) {
+        if (encoded.length == 0) {
+            return NO_PATH;
+        }
+        int count = 0;
+        for (byte b : encoded) {
+            if (b >= 0) {
+                count++;
+            }
+        }
+        int[] path = new int[count];
+        int previous = 0;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[position++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            path[i] = previous;
+        }
+        return path;
+    }
+
+    /**
+     * This method returns the maximum number of paths
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method returns the eviction policy
+     *
+     * @return the policy
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * This method returns the number of cached paths
+     *
+     * @return the number of paths
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * This method returns the number of queries which were answered from the cache
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * This method returns the number of queries which weren't cached
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * This method returns the number of paths which were evicted because their segment was full
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * This method returns the share of queries which were answered from the cache
+     *
+     * @return hits / (hits + misses), 0 before the first query
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * This class represents a part of the cache with its own capacity, all methods are called while the
+     * segment is locked
+     */
+    private abstract static class Segment {
+        final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        abstract byte[] get(long key);
+
+        /**
+         * @return true if another entry was evicted
+         */
+        abstract boolean put(long key, byte[] path);
+
+        abstract void clear();
+
+        abstract int size();
+    }
+
+    /**
+     * This class represents a segment which evicts the least recently used entry, the map keeps its entries
+     * in the order of their last access
+     */
+    private static final class LruSegment extends Segment {
+        private final LinkedHashMap<Long, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        LruSegment(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        byte[] get(long key) {
+            return entries.get(key);
+        }
+
+        @Override
+        boolean put(long key, byte[] path) {
+            if (entries.put(key, path) != null || entries.size() <= capacity) {
+                return false;
+            }
+            Iterator<byte[]> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            return true;
+        }
+
+        @Override
+        void clear() {
+            entries.clear();
+        }
+
+        @Override
+        int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * This class represents a segment which evicts the least frequently used entry. The keys are grouped by
+     * their number of accesses, each group in the order of the last access, so every operation takes constant
+     * time.
+     */
+    private static final class LfuSegment extends Segment {
+        private final HashMap<Long, Entry> entries = new HashMap<>();
+        private final HashMap<Integer, LinkedHashSet<Long>> keysByFrequency = new HashMap<>();
+        /*
+         * smallest frequency of all entries
+         */
+        private int minFrequency;
+
+        private static final class Entry {
+            byte[] path;
+            int frequency;
+
+            Entry(byte[] path) {
+                this.path = path;
+                this.frequency = 1;
+            }
+        }
+
+        LfuSegment(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        byte[] get(long key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            touch(key, entry);
+            return entry.path;
+        }
+
+        @Override
+        boolean put(long key, byte[] path) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.path = path;
+                touch(key, entry);
+                return false;
+            }
+            boolean evicted = false;
+            if (entries.size() >= capacity) {
+                LinkedHashSet<Long> leastFrequent = keysByFrequency.get(minFrequency);
+                Iterator<Long> eldest = leastFrequent.iterator();
+                entries.remove(eldest.next());
+                eldest.remove();
+                if (leastFrequent.isEmpty()) {
+                    keysByFrequency.remove(minFrequency);
+                }
+                evicted = true;
+            }
+            entries.put(key, new Entry(path));
+            keysByFrequency.computeIfAbsent(1, frequency -> new LinkedHashSet<>()).add(key);
+            minFrequency = 1;
+            return evicted;
+        }
+
+        /**
+         * This method moves the key into the group of the next frequency
+         */
+        private void touch(long key, Entry entry) {
+            LinkedHashSet<Long> keys = keysByFrequency.get(entry.frequency);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByFrequency.remove(entry.frequency);
+                if (minFrequency == entry.frequency) {
+                    minFrequency++;
+                }
+            }
+            entry.frequency++;
+            keysByFrequency.computeIfAbsent(entry.frequency, frequency -> new LinkedHashSet<>()).add(key);
+        }
+
+        @Override
+        void clear() {
+            entries.clear();
+            keysByFrequency.clear();
+            minFrequency = 0;
+        }
+
+        @Override
+        int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * This enum represents the algorithms which can be used to answer one-to-one queries.
+ * The name of each algorithm is used as algotype by the web client and as -algo argument by the Benchmark.
+ */
+public enum RoutingAlgorithm {
+
+    /*
+     * Dijkstra search from the source node
+     */
+    DIJKSTRA("dijkstra"),
+    /*
+     * Dijkstra searches from the source node and (on the reverse edges) from the target node
+     * which meet in the middle
+     */
+    BIDIRECTIONAL_DIJKSTRA("bidijkstra"),
+    /*
+     * A* search from the source node, guided by the great-circle distance to the target node
+     */
+    A_STAR("astar"),
+    /*
+     * A* search from the source node, guided by the distances to and from a few landmarks (see Landmarks)
+     */
+    ALT("alt"),
+    /*
+     * upward searches from the source node and the target node in the Contraction Hierarchy of the graph
+     */
+    CONTRACTION_HIERARCHY("ch");
+
+    private final String name;
+
+    RoutingAlgorithm(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * This method returns the algorithm with the given name
+     *
+     * @param name name of the algorithm
+     * @return the algorithm or null if there is no algorithm with this name
+     */
+    public static RoutingAlgorithm fromName(String name) {
+        for (RoutingAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * This class represents the shortest path tree of a source node: the distance and the predecessor of every
+ * node. The distance to a node is a lookup and the path to a node a walk along the predecessors, no search is
+ * necessary.
+ * <p>
+ * Both arrays are either stored on the heap or off-heap in direct buffers, which don't enlarge the heap the
+ * garbage collector has to scan (their size is limited by -XX:MaxDirectMemorySize).
+ */
+public class ShortestPathTree {
+
+    private final int source;
+    /*
+     * distance of each node from the source, Integer.MAX_VALUE if the node isn't reachable
+     */
+    private final IntBuffer distances;
+    /*
+     * predecessor of each node on its shortest path, the source is its own predecessor
+     */
+    private final IntBuffer predecessors;
+    private final boolean offHeap;
+
+    /**
+     * Class constructor of the ShortestPathTree, the tree is filled by the PathFinder
+     * (see PathFinder.shortestPathTree)
+     *
+     * @param source        index of the source node
+     * @param numberOfNodes number of nodes of the graph
+     * @param offHeap       true if the arrays are stored in direct buffers
+     */
+    ShortestPathTree(int source, int numberOfNodes, boolean offHeap) {
+        this.source = source;
+        this.offHeap = offHeap;
+        if (offHeap) {
+            this.distances = ByteBuffer.allocateDirect(4 * numberOfNodes).order(ByteOrder.nativeOrder()).asIntBuffer();
+            this.predecessors = ByteBuffer.allocateDirect(4 * numberOfNodes).order(ByteOrder.nativeOrder()).asIntBuffer();
+        } else {
+            this.distances = IntBuffer.wrap(new int[numberOfNodes]);
+            this.predecessors = IntBuffer.wrap(new int[numberOfNodes]);
+        }
+    }
+
+    /**
+     * This method stores the distance and the predecessor of a node
+     *
+     * @param node        node index
+     * @param distance    distance from the source or Integer.MAX_VALUE
+     * @param predecessor predecessor on the shortest path
+     */
+    void set(int node, int distance, int predecessor) {
+        distances.put(node, distance);
+        predecessors.put(node, predecessor);
+    }
+
+    /**
+     * This method returns the source of the tree
+     *
+     * @return index of the source node
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * This method returns the distance from the source to the node
+     *
+     * @param node node index
+     * @return the distance or Integer.MAX_VALUE if there is no path
+     */
+    public int getDistance(int node) {
+        return distances.get(node);
+    }
+
+    /**
+     * This method returns the distances from the source to all nodes
+     *
+     * @return a new array with the distance of each node, Integer.MAX_VALUE if there is no path
+     */
+    public int[] getDistances() {
+        int[] copy = new int[distances.capacity()];
+        distances.get(0, copy);
+        return copy;
+    }
+
+    /**
+     * This method returns the shortest path from the source to the node
+     *
+     * @param node index of the target node
+     * @return the node indices of the path (target first, source last), empty if there is no path
+     */
+    public int[] getPath(int node) {
+        if (distances.get(node) == Integer.MAX_VALUE) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int current = node; current != source; current = predecessors.get(current)) {
+            length++;
+        }
+        int[] path = new int[length];
+        int current = node;
+        for (int i = 0; i < length; i++) {
+            path[i] = current;
+            current = predecessors.get(current);
+        }
+        return path;
+    }
+
+    /**
+     * This method returns the memory of both arrays
+     *
+     * @return size in bytes
+     */
+    public long getSizeInBytes() {
+        return 8L * distances.capacity();
+    }
+
+    /**
+     * This method tells where the arrays are stored
+     *
+     * @return true if the arrays are stored off-heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+}
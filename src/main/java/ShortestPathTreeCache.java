@@ -0,0 +1,326 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a cache of shortest path trees (see ShortestPathTree) for the sources which are queried
+ * most often. A one-to-one query from a cached source is answered by a lookup, its path by a walk along the
+ * predecessors.
+ * <p>
+ * A tree costs 8 bytes per node, so only few trees fit into the memory budget. A source gets a tree only after
+ * it was queried ADMISSION_THRESHOLD times, the frequencies are estimated by a count-min sketch whose counters
+ * are halved regularly, so sources which were hot long ago don't stay hot forever. The tree is calculated by the
+ * query which reaches the threshold, a full tree costs about as much as a few one-to-one searches. When the
+ * budget is exhausted, the least recently used tree is evicted, but only for a source which is queried more often
+ * than the source of this tree. Otherwise more hot sources than trees in the budget would evict each other
+ * and calculate their trees again and again.
+ * <p>
+ * No query takes a lock: the counters of the sketch are atomic and every source has one future of its tree in a
+ * concurrent map. The query which puts the future into the map calculates the tree, concurrent queries of the
+ * same source don't wait for it but search on their own until the tree is done.
+ */
+public class ShortestPathTreeCache {
+
+    /*
+     * number of queries from a source within the aging period until its tree is calculated
+     */
+    static final int ADMISSION_THRESHOLD = 3;
+    /*
+     * number of rows and counters per row of the count-min sketch, a power of two
+     */
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 12;
+    /*
+     * number of recorded queries after which all counters of the sketch are halved
+     */
+    private static final int AGING_PERIOD = 10 * SKETCH_WIDTH;
+
+    private final Graph graph;
+    private final long memoryBudget;
+    private final boolean offHeap;
+
+    /*
+     * the trees by their sources, a tree which is still calculated has an incomplete future
+     */
+    private final ConcurrentHashMap<Integer, CachedTree> trees = new ConcurrentHashMap<>();
+    /*
+     * memory of the trees in the map, reserved before a tree is calculated
+     */
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    /*
+     * count-min sketch of the query frequencies of the sources
+     */
+    private final AtomicIntegerArray sketch = new AtomicIntegerArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    private final AtomicInteger recordedQueries = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * This class represents the entry of a source in the cache
+     */
+    private static final class CachedTree {
+        final CompletableFuture<ShortestPathTree> tree = new CompletableFuture<>();
+        final long size;
+        volatile long lastAccess = System.nanoTime();
+
+        CachedTree(long size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Class constructor of the ShortestPathTreeCache
+     *
+     * @param graph        the graph
+     * @param memoryBudget maximum memory of all trees in bytes
+     * @param offHeap      true if the trees are stored off-heap
+     */
+    public ShortestPathTreeCache(Graph graph, long memoryBudget, boolean offHeap) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("negative memory budget " + memoryBudget);
+        }
+        this.graph = graph;
+        this.memoryBudget = memoryBudget;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * This method returns the tree of the source. If the source isn't cached but was queried often enough, its
+     * tree is calculated and cached.
+     *
+     * @param source index of the source node
+     * @return the tree or null if the source isn't hot (yet) or its tree is still calculated by another query
+     */
+    public ShortestPathTree get(int source) {
+        //queries of cached sources are counted too, otherwise they would seem to get cold
+        int frequency = recordQuery(source);
+        CachedTree cached = trees.get(source);
+        if (cached != null) {
+            return lookup(cached);
+        }
+        misses.increment();
+        long treeSize = 8L * graph.getNumberOfNodes();
+        //a tree which doesn't fit into the budget would be evicted right away
+        if (treeSize > memoryBudget) {
+            return null;
+        }
+        if (frequency < ADMISSION_THRESHOLD) {
+            return null;
+        }
+        if (usedMemory.get() + treeSize > memoryBudget) {
+            Map.Entry<Integer, CachedTree> victim = leastRecentlyUsed(null);
+            if (victim != null && frequency <= estimateQueries(victim.getKey())) {
+                return null;
+            }
+        }
+        cached = new CachedTree(treeSize);
+        CachedTree previous = trees.putIfAbsent(source, cached);
+        if (previous != null) {
+            //another query admitted the source in the meantime
+            return previous.tree.getNow(null);
+        }
+        usedMemory.addAndGet(treeSize);
+        evict(cached);
+
+        ShortestPathTree tree;
+        PathFinder pathFinder = graph.getPathFinderPool().acquire();
+        try {
+            tree = pathFinder.shortestPathTree(source, offHeap);
+        } catch (RuntimeException | Error e) {
+            remove(source, cached);
+            throw e;
+        } finally {
+            graph.getPathFinderPool().release(pathFinder);
+        }
+        builds.increment();
+        cached.tree.complete(tree);
+        return tree;
+    }
+
+    /**
+     * This method returns the tree of a cached source and counts the query as hit or miss
+     *
+     * @param cached the entry of the source
+     * @return the tree or null if it is still calculated
+     */
+    private ShortestPathTree lookup(CachedTree cached) {
+        ShortestPathTree tree = cached.tree.getNow(null);
+        if (tree == null) {
+            misses.increment();
+            return null;
+        }
+        cached.lastAccess = System.nanoTime();
+        hits.increment();
+        return tree;
+    }
+
+    /**
+     * This method evicts the least recently used trees until the memory budget is kept
+     *
+     * @param admitted the entry which was just added, it isn't evicted
+     */
+    private void evict(CachedTree admitted) {
+        while (usedMemory.get() > memoryBudget) {
+            Map.Entry<Integer, CachedTree> victim = leastRecentlyUsed(admitted);
+            if (victim == null) {
+                return;
+            }
+            if (remove(victim.getKey(), victim.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * This method finds the entry which wasn't accessed for the longest time, only few trees fit into the
+     * budget, so the entries are simply scanned
+     *
+     * @param excluded an entry which is skipped or null
+     * @return the entry or null if there is none
+     */
+    private Map.Entry<Integer, CachedTree> leastRecentlyUsed(CachedTree excluded) {
+        Map.Entry<Integer, CachedTree> eldest = null;
+        for (Map.Entry<Integer, CachedTree> entry : trees.entrySet()) {
+            if (entry.getValue() != excluded
+                    && (eldest == null || entry.getValue().lastAccess - eldest.getValue().lastAccess < 0)) {
+                eldest = entry;
+            }
+        }
+        return eldest;
+    }
+
+    /**
+     * This method removes the entry of a source and releases its memory, unless it was removed already
+     *
+     * @return true if the entry was removed
+     */
+    private boolean remove(int source, CachedTree cached) {
+        if (!trees.remove(source, cached)) {
+            return false;
+        }
+        usedMemory.addAndGet(-cached.size);
+        return true;
+    }
+
+    /**
+     * This method counts a query of the source in the sketch
+     *
+     * @param source index of the source node
+     * @return the estimated number of queries of the source in the current aging period, this one included
+     */
+    private int recordQuery(int source) {
+        //exactly one query per period halves the counters, concurrent increments aren't lost
+        if (recordedQueries.updateAndGet(count -> count + 1 == AGING_PERIOD ? 0 : count + 1) == 0) {
+            for (int i = 0; i < sketch.length(); i++) {
+                sketch.getAndUpdate(i, counter -> counter >>> 1);
+            }
+        }
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.incrementAndGet(counter(source, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * This method estimates the number of queries of the source in the current aging period
+     *
+     * @param source index of the source node
+     * @return the estimated number of queries
+     */
+    private int estimateQueries(int source) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.get(counter(source, row)));
+        }
+        return estimate;
+    }
+
+    private static int counter(int source, int row) {
+        //every row uses other 12 bits of the hash
+        long hash = source * 0x9E3779B97F4A7C15L;
+        return row * SKETCH_WIDTH + ((int) (hash >>> (64 - 12 * (row + 1))) & (SKETCH_WIDTH - 1));
+    }
+
+    /**
+     * This method returns the maximum memory of all trees
+     *
+     * @return the memory budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * This method returns the memory of the cached trees
+     *
+     * @return the used memory in bytes
+     */
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    /**
+     * This method returns the number of cached trees
+     *
+     * @return the number of trees
+     */
+    public int size() {
+        return trees.size();
+    }
+
+    /**
+     * This method returns the number of queries which were answered by a cached tree
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * This method returns the number of queries whose source had no tree
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * This method returns the number of calculated trees
+     *
+     * @return the number of builds
+     */
+    public long getBuilds() {
+        return builds.sum();
+    }
+
+    /**
+     * This method returns the number of trees which were evicted to keep the memory budget
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * This method returns the share of queries which were answered by a cached tree
+     *
+     * @return hits / (hits + misses), 0 before the first query
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the lines the AccessLog writes and that its ring buffer loses no entry of concurrent request
+ * threads as long as it has room for them.
+ */
+class AccessLogTest {
+
+    @Test
+    void entriesAreWrittenAsJsonLines() {
+        StringWriter out = new StringWriter();
+        AccessLog accessLog = AccessLog.start(out, 16, 1, 8);
+        accessLog.log(0, "request", 200, 1_500_000, "algotype=dijkstra", "path of 3 nodes");
+        accessLog.log(0, "snap", 400, 0, null, "say \"hi\"");
+        accessLog.close();
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"time\":\"1970-01-01T00:00:00Z\",\"endpoint\":\"request\",\"status\":200,\"duration_ms\":1.5,"
+                + "\"query\":\"algotype...(9 more)\",\"detail\":\"path of ...(7 more)\"}", lines[0]);
+        assertEquals("{\"time\":\"1970-01-01T00:00:00Z\",\"endpoint\":\"snap\",\"status\":400,\"duration_ms\":0.0,"
+                + "\"detail\":\"say \\\"hi\\\"\"}", lines[1]);
+        assertEquals(0, accessLog.getDroppedEntries());
+    }
+
+    @Test
+    void concurrentEntriesAreAllWritten() throws InterruptedException {
+        StringWriter out = new StringWriter();
+        AccessLog accessLog = AccessLog.start(out, 1 << 12, 1, 256);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    accessLog.log(0, "request", 200, 0, "thread=" + thread, String.valueOf(i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        accessLog.close();
+        //the buffer holds all entries, so none is dropped even if the background thread didn't run meanwhile
+        assertEquals(0, accessLog.getDroppedEntries());
+        assertEquals(4000, out.toString().split("\n").length);
+        for (int t = 0; t < threads.length; t++) {
+            assertTrue(out.toString().contains("\"query\":\"thread=" + t + "\",\"detail\":\"999\""));
+        }
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        StringWriter out = new StringWriter();
+        assertThrows(IllegalArgumentException.class, () -> AccessLog.start(out, 0, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> AccessLog.start(out, 16, 1.5, 10));
+        assertThrows(IllegalArgumentException.class, () -> AccessLog.start(out, 16, 1, -1));
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that the lower bounds of the landmarks never exceed the distances of a plain Dijkstra, also
+ * for unreachable nodes, and that saved landmarks are only loaded for their own graph.
+ */
+class LandmarksTest {
+
+    private static final int NUMBER_OF_NODES = 300;
+
+    @TempDir
+    static Path directory;
+
+    private static TestGraphs.RandomGraph randomGraph;
+    private static Graph graph;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        randomGraph = new TestGraphs.RandomGraph(NUMBER_OF_NODES, 4, 9);
+        File file = directory.resolve("random.fmi").toFile();
+        randomGraph.write(file);
+        graph = new Graph(file);
+    }
+
+    @Test
+    void lowerBoundsAreAdmissible() {
+        Landmarks landmarks = Landmarks.build(graph, Landmarks.DEFAULT_COUNT);
+        int[] all = new int[landmarks.getCount()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        Random random = new Random(13);
+        for (int t = 0; t < 10; t++) {
+            int target = random.nextInt(NUMBER_OF_NODES);
+            for (int node = 0; node < NUMBER_OF_NODES; node++) {
+                int distance = randomGraph.dijkstra(node)[target];
+                int bound = landmarks.lowerBound(node, target, all, all.length);
+                assertTrue(bound >= 0 && bound <= distance, "bound " + bound + " of " + node + " -> " + target
+                        + " exceeds " + distance);
+            }
+        }
+    }
+
+    @Test
+    void fewerLandmarksAreChosenIfFewNodesAreReachable() throws IOException {
+        //a line of four nodes and a pair of nodes which can't be reached from it
+        File file = directory.resolve("small.fmi").toFile();
+        TestGraphs.write(file, new double[]{48.70, 48.71, 48.72, 48.73, 48.80, 48.81},
+                new double[]{9.10, 9.11, 9.12, 9.13, 9.20, 9.21},
+                new int[][]{{0, 1, 10}, {1, 2, 10}, {2, 3, 10}, {4, 5, 10}});
+        Graph smallGraph = new Graph(file);
+        Landmarks landmarks = Landmarks.build(smallGraph, Landmarks.DEFAULT_COUNT);
+        int[] chosen = landmarks.getLandmarks();
+        assertEquals(chosen.length, landmarks.getCount());
+        assertTrue(chosen.length > 0 && chosen.length < Landmarks.DEFAULT_COUNT);
+        assertEquals(chosen.length, Arrays.stream(chosen).distinct().count());
+
+        File landmarkFile = directory.resolve("small.landmarks").toFile();
+        landmarks.save(landmarkFile, smallGraph.getFingerprint());
+        assertArrayEquals(chosen, Landmarks.load(landmarkFile, smallGraph).getLandmarks());
+        assertEquals(0, Landmarks.build(smallGraph, 0).getCount());
+    }
+
+    @Test
+    void savedLandmarksBelongToTheirGraph() throws IOException {
+        Landmarks landmarks = Landmarks.build(graph, 4);
+        File landmarkFile = directory.resolve("saved.landmarks").toFile();
+        landmarks.save(landmarkFile, graph.getFingerprint());
+        Landmarks loaded = Landmarks.load(landmarkFile, graph);
+        assertNotNull(loaded);
+        assertArrayEquals(landmarks.getLandmarks(), loaded.getLandmarks());
+
+        File otherFile = directory.resolve("other.fmi").toFile();
+        new TestGraphs.RandomGraph(NUMBER_OF_NODES, 4, 10).write(otherFile);
+        assertNull(Landmarks.load(landmarkFile, new Graph(otherFile)));
+    }
+}
@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the simplification of paths on a line of nodes with one small and one large detour.
+ */
+class PathSimplifierTest {
+
+    @TempDir
+    static Path directory;
+
+    private static Graph graph;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        //node 1 is about 1 meter, node 3 about 550 meters north of the line
+        File file = directory.resolve("line.fmi").toFile();
+        TestGraphs.write(file, new double[]{48.7, 48.70001, 48.7, 48.705, 48.7},
+                new double[]{9.10, 9.11, 9.12, 9.13, 9.14},
+                new int[][]{{0, 1, 10}, {1, 2, 10}, {2, 3, 10}, {3, 4, 10}});
+        graph = new Graph(file);
+    }
+
+    @Test
+    void zeroToleranceKeepsEveryNode() {
+        int[] path = {4, 3, 2, 1, 0};
+        assertArrayEquals(path, PathSimplifier.simplify(graph, path, 0));
+    }
+
+    @Test
+    void smallDetoursAreRemoved() {
+        assertArrayEquals(new int[]{4, 3, 2, 0}, PathSimplifier.simplify(graph, new int[]{4, 3, 2, 1, 0}, 10));
+        assertArrayEquals(new int[]{4, 0}, PathSimplifier.simplify(graph, new int[]{4, 3, 2, 1, 0}, 1000));
+    }
+
+    @Test
+    void toleranceOfZoomIsHalfAPixel() {
+        //a tile of zoom 0 covers the equator with 256 pixels
+        assertEquals(2 * Math.PI * GeoDistance.EARTH_RADIUS / 512, PathSimplifier.toleranceOfZoom(0, 0), 1e-6);
+        assertEquals(PathSimplifier.toleranceOfZoom(10, 48.7) / 2, PathSimplifier.toleranceOfZoom(11, 48.7), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> PathSimplifier.toleranceOfZoom(31, 0));
+        assertThrows(IllegalArgumentException.class, () -> PathSimplifier.simplify(graph, new int[]{0, 1, 2}, -1));
+    }
+}
@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class compares the output of the PathWriter with reference encodings, the polyline with the example of
+ * Google's documentation of the format.
+ */
+class PathWriterTest {
+
+    @TempDir
+    static Path directory;
+
+    private static Graph graph;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        File file = directory.resolve("polyline.fmi").toFile();
+        TestGraphs.write(file, new double[]{38.5, 40.7, 43.252, -0.5}, new double[]{-120.2, -120.95, -126.453, 0},
+                new int[][]{{0, 1, 10}, {1, 2, 10}, {2, 3, 10}});
+        graph = new Graph(file);
+    }
+
+    @Test
+    void polylineMatchesReference() throws IOException {
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", write(writer -> writer.writePolyline(graph, new int[]{0, 1, 2})));
+        assertEquals("", write(writer -> writer.writePolyline(graph, new int[0])));
+    }
+
+    @Test
+    void jsonHasNoTrailingZeros() throws IOException {
+        assertEquals("[[-120.2,38.5],[-120.95,40.7],[-126.453,43.252],[0,-0.5]]",
+                write(writer -> writer.writeJson(graph, new int[]{0, 1, 2, 3})));
+        assertEquals("[null]", write(writer -> writer.writeJson(graph, new int[0])));
+    }
+
+    @Test
+    void binaryHasFixedPointCoordinates() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PathWriter writer = new PathWriter(out);
+        writer.writeBinary(graph, new int[]{2, 0});
+        writer.close();
+        ByteBuffer expected = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(-1264530000).putInt(432520000).putInt(-1202000000).putInt(385000000);
+        assertArrayEquals(expected.array(), out.toByteArray());
+    }
+
+    @Test
+    void longPathsSpanSeveralBuffers() throws IOException {
+        int[] path = new int[5000];
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < path.length; i++) {
+            path[i] = i % 2;
+            expected.append(i == 0 ? "" : ",").append(i % 2 == 0 ? "[-120.2,38.5]" : "[-120.95,40.7]");
+        }
+        assertEquals(expected.append("]").toString(), write(writer -> writer.writeJson(graph, path)));
+    }
+
+    private interface Output {
+        void write(PathWriter writer) throws IOException;
+    }
+
+    private static String write(Output output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PathWriter writer = new PathWriter(out);
+        output.write(writer);
+        writer.close();
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
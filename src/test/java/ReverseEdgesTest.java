@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class checks that the reverse edges of the bidirectional searches are exactly the edges of the graph
+ * turned around, for a parsed graph, a renumbered one and a graph loaded from a snapshot.
+ */
+class ReverseEdgesTest {
+
+    @TempDir
+    static Path directory;
+
+    private static File graphFile;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        graphFile = directory.resolve("random.fmi").toFile();
+        new TestGraphs.RandomGraph(300, 3, 5).write(graphFile);
+    }
+
+    @Test
+    void parsedGraph() throws IOException {
+        checkReverseEdges(new Graph(graphFile));
+    }
+
+    @Test
+    void renumberedGraph() throws IOException {
+        checkReverseEdges(new Graph(graphFile, NodeOrder.HILBERT));
+    }
+
+    @Test
+    void snapshot() throws IOException {
+        File snapshotFile = directory.resolve("random.graph").toFile();
+        GraphSnapshot.write(new Graph(graphFile), snapshotFile);
+        Graph graph = new Graph(snapshotFile);
+        checkReverseEdges(graph);
+        assertEquals(edges(new Graph(graphFile), false), edges(graph, false));
+    }
+
+    private static void checkReverseEdges(Graph graph) {
+        List<String> edges = edges(graph, false);
+        assertEquals(graph.getNumberOfEdges(), edges.size());
+        assertEquals(edges, edges(graph, true));
+    }
+
+    /**
+     * This method lists the edges as "source target weight" in node ids, sorted
+     */
+    private static List<String> edges(Graph graph, boolean reverse) {
+        List<String> edges = new ArrayList<>();
+        for (int node = 0; node < graph.getNumberOfNodes(); node++) {
+            int begin = reverse ? graph.getReverseOffsetOfNode(node) : graph.getOffsetOfNode(node);
+            int end = reverse ? graph.getReverseOffsetOfNode(node + 1) : graph.getOffsetOfNode(node + 1);
+            for (int edge = begin; edge < end; edge++) {
+                int other = reverse ? graph.getSrcIDXofReverseEdge(edge) : graph.getTrgIDXofEdge(edge);
+                int weight = reverse ? graph.getWeightOfReverseEdge(edge) : graph.getWeightOfEdge(edge);
+                int source = graph.getIdOfNode(reverse ? other : node);
+                int target = graph.getIdOfNode(reverse ? node : other);
+                edges.add(source + " " + target + " " + weight);
+            }
+        }
+        Collections.sort(edges);
+        return edges;
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the compact encoding of the paths and the lookups of the RouteCache.
+ */
+class RouteCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void encodedPathsAreDecodedUnchanged() {
+        int[][] paths = {
+                {},
+                {0},
+                {5, 4, 3, 2, 1, 0},
+                {Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 1},
+                {1_000_000, 1_000_063, 1_000_064, 999_936, 8_191, 8_192, 16_383, 16_384},
+        };
+        for (int[] path : paths) {
+            assertArrayEquals(path, RouteCache.decode(RouteCache.encode(path)));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            int[] path = new int[random.nextInt(500)];
+            int node = random.nextInt(Integer.MAX_VALUE);
+            for (int j = 0; j < path.length; j++) {
+                //mostly neighbouring indices, sometimes far jumps
+                node = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE)
+                        : Math.max(0, node + random.nextInt(201) - 100);
+                path[j] = node;
+            }
+            assertArrayEquals(path, RouteCache.decode(RouteCache.encode(path)));
+        }
+    }
+
+    @Test
+    void closeIndicesNeedFewBytes() {
+        int[] path = new int[1000];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = 500_000 + (i % 2 == 0 ? i : -i);
+        }
+        assertTrue(RouteCache.encode(path).length < 3 * path.length);
+    }
+
+    @Test
+    void cachedPathsAreReturned() throws IOException {
+        Graph graph = smallGraph("small.fmi");
+        for (RouteCache.Policy policy : RouteCache.Policy.values()) {
+            RouteCache cache = new RouteCache(100, policy);
+            assertNull(cache.get(graph, 0, 2));
+            cache.put(graph, 0, 2, new int[]{2, 1, 0});
+            cache.put(graph, 2, 0, new int[0]);
+            assertArrayEquals(new int[]{2, 1, 0}, cache.get(graph, 0, 2), policy.getName());
+            assertArrayEquals(new int[0], cache.get(graph, 2, 0), policy.getName());
+            assertEquals(2, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    void pathsOfAnotherGraphAreDropped() throws IOException {
+        Graph graph = smallGraph("first.fmi");
+        RouteCache cache = new RouteCache(100, RouteCache.Policy.LRU);
+        cache.put(graph, 0, 2, new int[]{2, 1, 0});
+        assertNull(cache.get(smallGraph("second.fmi"), 0, 2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void fullCacheEvicts() throws IOException {
+        Graph graph = smallGraph("small.fmi");
+        RouteCache cache = new RouteCache(16, RouteCache.Policy.LRU);
+        for (int i = 0; i < 100; i++) {
+            cache.put(graph, i, i + 1, new int[]{i + 1, i});
+        }
+        assertTrue(cache.size() <= 16);
+        assertEquals(100 - cache.size(), cache.getEvictions());
+        assertArrayEquals(new int[]{100, 99}, cache.get(graph, 99, 100));
+    }
+
+    private Graph smallGraph(String name) throws IOException {
+        File file = directory.resolve(name).toFile();
+        TestGraphs.write(file, new double[]{48.70, 48.71, 48.72}, new double[]{9.10, 9.11, 9.12},
+                new int[][]{{0, 1, 10}, {1, 2, 10}});
+        return new Graph(file);
+    }
+}
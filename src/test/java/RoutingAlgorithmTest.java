@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class compares the distances and paths of every RoutingAlgorithm with a plain Dijkstra on a small random
+ * graph, with the nodes in the order of the file and renumbered.
+ */
+class RoutingAlgorithmTest {
+
+    private static final int NUMBER_OF_NODES = 400;
+    private static final int NUMBER_OF_ISOLATED_NODES = 5;
+    private static final int NUMBER_OF_SOURCES = 12;
+    private static final int TARGETS_PER_SOURCE = 30;
+
+    @TempDir
+    static Path directory;
+
+    private static TestGraphs.RandomGraph randomGraph;
+    private static File graphFile;
+
+    @BeforeAll
+    static void writeGraph() throws IOException {
+        randomGraph = new TestGraphs.RandomGraph(NUMBER_OF_NODES, NUMBER_OF_ISOLATED_NODES, 42);
+        graphFile = directory.resolve("random.fmi").toFile();
+        randomGraph.write(graphFile);
+    }
+
+    @Test
+    void distancesMatchDijkstra() throws IOException {
+        checkDistances(new Graph(graphFile));
+    }
+
+    @Test
+    void distancesMatchDijkstraWithRenumberedNodes() throws IOException {
+        checkDistances(new Graph(graphFile, NodeOrder.HILBERT));
+    }
+
+    @Test
+    void pathsHaveTheShortestDistance() throws IOException {
+        Graph graph = new Graph(graphFile, NodeOrder.BFS);
+        Random random = new Random(7);
+        for (int s = 0; s < NUMBER_OF_SOURCES; s++) {
+            int source = random.nextInt(NUMBER_OF_NODES - NUMBER_OF_ISOLATED_NODES);
+            int[] expected = randomGraph.dijkstra(source);
+            for (int t = 0; t < TARGETS_PER_SOURCE; t++) {
+                int target = random.nextInt(NUMBER_OF_NODES);
+                for (RoutingAlgorithm algorithm : RoutingAlgorithm.values()) {
+                    int[] path = graph.getPath(graph.getIndexOfNodeId(source), graph.getIndexOfNodeId(target),
+                            algorithm);
+                    String query = algorithm.getName() + " " + source + " -> " + target;
+                    if (expected[target] == Integer.MAX_VALUE) {
+                        assertEquals(0, path.length, query);
+                        continue;
+                    }
+                    //the target comes first, the source last
+                    assertEquals(target, graph.getIdOfNode(path[0]), query);
+                    assertEquals(source, graph.getIdOfNode(path[path.length - 1]), query);
+                    long length = 0;
+                    for (int i = path.length - 1; i > 0; i--) {
+                        int weight = randomGraph.weight(graph.getIdOfNode(path[i]), graph.getIdOfNode(path[i - 1]));
+                        assertTrue(weight >= 0, query + " uses an edge which doesn't exist");
+                        length += weight;
+                    }
+                    assertEquals(expected[target], length, query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void distanceMatrixMatchesDijkstra() throws IOException {
+        Graph graph = new Graph(graphFile);
+        Random random = new Random(11);
+        int[] sources = random.ints(8, 0, NUMBER_OF_NODES).toArray();
+        int[] targets = random.ints(20, 0, NUMBER_OF_NODES).toArray();
+        int[][] matrix = graph.distanceMatrix(sources, targets);
+        for (int i = 0; i < sources.length; i++) {
+            int[] expected = randomGraph.dijkstra(sources[i]);
+            int[] row = new int[targets.length];
+            for (int j = 0; j < targets.length; j++) {
+                row[j] = expected[targets[j]];
+            }
+            assertArrayEquals(row, matrix[i], "row of source " + sources[i]);
+        }
+    }
+
+    private static void checkDistances(Graph graph) {
+        Random random = new Random(3);
+        for (int s = 0; s < NUMBER_OF_SOURCES; s++) {
+            //some sources are isolated, nothing can be reached from them
+            int source = random.nextInt(NUMBER_OF_NODES);
+            int[] expected = randomGraph.dijkstra(source);
+            int sourceIndex = graph.getIndexOfNodeId(source);
+            int[] oneToAll = graph.findRouteAtoAll(sourceIndex);
+            for (int target = 0; target < NUMBER_OF_NODES; target++) {
+                assertEquals(expected[target], oneToAll[graph.getIndexOfNodeId(target)],
+                        "one-to-all " + source + " -> " + target);
+            }
+            for (int t = 0; t < TARGETS_PER_SOURCE; t++) {
+                int target = random.nextInt(NUMBER_OF_NODES);
+                int targetIndex = graph.getIndexOfNodeId(target);
+                for (RoutingAlgorithm algorithm : RoutingAlgorithm.values()) {
+                    assertEquals(expected[target], graph.findRouteAtoB(sourceIndex, targetIndex, algorithm),
+                            algorithm.getName() + " " + source + " -> " + target);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This class writes small graph files in the format of the .fmi files for the tests and calculates reference
+ * distances with a plain Dijkstra, independent of the PathFinder.
+ */
+final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /**
+     * This method writes a graph file
+     *
+     * @param file       the file
+     * @param latitudes  latitude of each node
+     * @param longitudes longitude of each node
+     * @param edges      source, target and weight of each edge, sorted by source
+     * @throws IOException if the file can't be written
+     */
+    static void write(File file, double[] latitudes, double[] longitudes, int[][] edges) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            out.print("# Id : test\n# Timestamp : 0\n# Type: maxspeed\n# Revision: 1\n\n");
+            out.print(latitudes.length + "\n" + edges.length + "\n");
+            for (int node = 0; node < latitudes.length; node++) {
+                out.print(String.format(Locale.ROOT, "%d %d %.7f %.7f 0\n",
+                        node, 1000 + node, latitudes[node], longitudes[node]));
+            }
+            for (int[] edge : edges) {
+                out.print(edge[0] + " " + edge[1] + " " + edge[2] + " 3 50\n");
+            }
+        }
+    }
+
+    /**
+     * This class represents a random road network: every node has edges to its nearest nodes and one edge to a
+     * random node, the weights are the distances times a random factor, so the graph is directed. The last
+     * nodes have no edges, they can't be reached.
+     */
+    static final class RandomGraph {
+        final double[] latitudes;
+        final double[] longitudes;
+        final int[][] edges;
+
+        RandomGraph(int numberOfNodes, int numberOfIsolatedNodes, long seed) {
+            Random random = new Random(seed);
+            latitudes = new double[numberOfNodes];
+            longitudes = new double[numberOfNodes];
+            for (int node = 0; node < numberOfNodes; node++) {
+                latitudes[node] = 48.6 + 0.2 * random.nextDouble();
+                longitudes[node] = 9.0 + 0.3 * random.nextDouble();
+            }
+            int connected = numberOfNodes - numberOfIsolatedNodes;
+            int[][] edgeList = new int[4 * connected][];
+            int count = 0;
+            Integer[] byDistance = new Integer[connected];
+            for (int node = 0; node < connected; node++) {
+                for (int i = 0; i < connected; i++) {
+                    byDistance[i] = i;
+                }
+                int source = node;
+                Arrays.sort(byDistance, Comparator.comparingDouble(other -> meters(source, other)));
+                //byDistance[0] is the node itself
+                for (int i = 1; i <= 3; i++) {
+                    edgeList[count++] = edge(source, byDistance[i], random);
+                }
+                int target = random.nextInt(connected);
+                edgeList[count++] = edge(source, target == source ? (target + 1) % connected : target, random);
+            }
+            edges = Arrays.copyOf(edgeList, count);
+        }
+
+        private int[] edge(int source, int target, Random random) {
+            return new int[]{source, target, 1 + (int) (meters(source, target) * (1 + random.nextDouble()))};
+        }
+
+        private double meters(int a, int b) {
+            double x = (longitudes[a] - longitudes[b]) * Math.cos(Math.toRadians(latitudes[a])) * 111_320;
+            double y = (latitudes[a] - latitudes[b]) * 111_320;
+            return Math.sqrt(x * x + y * y);
+        }
+
+        /**
+         * This method writes the graph
+         *
+         * @param file the file
+         * @throws IOException if the file can't be written
+         */
+        void write(File file) throws IOException {
+            TestGraphs.write(file, latitudes, longitudes, edges);
+        }
+
+        /**
+         * This method calculates the distances from the source to all nodes with a plain Dijkstra
+         *
+         * @param source id of the source node
+         * @return distance of each node id, Integer.MAX_VALUE if it can't be reached
+         */
+        int[] dijkstra(int source) {
+            int[] distances = new int[latitudes.length];
+            Arrays.fill(distances, Integer.MAX_VALUE);
+            distances[source] = 0;
+            PriorityQueue<int[]> queue = new PriorityQueue<>(Comparator.comparingInt(entry -> entry[1]));
+            queue.add(new int[]{source, 0});
+            while (!queue.isEmpty()) {
+                int[] entry = queue.poll();
+                if (entry[1] > distances[entry[0]]) {
+                    continue;
+                }
+                for (int[] edge : edges) {
+                    if (edge[0] == entry[0] && entry[1] + edge[2] < distances[edge[1]]) {
+                        distances[edge[1]] = entry[1] + edge[2];
+                        queue.add(new int[]{edge[1], distances[edge[1]]});
+                    }
+                }
+            }
+            return distances;
+        }
+
+        /**
+         * This method returns the smallest weight of the edges from one node to another
+         *
+         * @param source id of the source node
+         * @param target id of the target node
+         * @return the weight or -1 if there is no such edge
+         */
+        int weight(int source, int target) {
+            int weight = -1;
+            for (int[] edge : edges) {
+                if (edge[0] == source && edge[1] == target && (weight < 0 || edge[2] < weight)) {
+                    weight = edge[2];
+                }
+            }
+            return weight;
+        }
+    }
+}